@@ -0,0 +1,137 @@
+package com.xujiaao.android.court;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CourtReplayPlayerTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Rule
+    public final UiThreadTestRule mUiThreadTestRule = new UiThreadTestRule();
+
+    private File mFile;
+    private CourtReplay mReplay;
+
+    /**
+     * Adapter of the replay entities, locations are read from the replay at the clock of the player.
+     */
+    private class ReplayAdapter extends BaseAdapter implements CourtView.MarkerAdapter {
+
+        final float[] mLocations = new float[mReplay.getEntityCount() * 2];
+        CourtReplayPlayer mPlayer;
+
+        @Override
+        public int getCount() {
+            return mReplay.getEntityCount();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            final View view = convertView != null ? convertView : new View(parent.getContext());
+
+            final CourtView.LayoutParams lp = new CourtView.LayoutParams();
+            lp.width = 10;
+            lp.height = 10;
+            getItemLocation(position, lp);
+            view.setLayoutParams(lp);
+
+            return view;
+        }
+
+        @Override
+        public void getItemLocation(int position, CourtView.LayoutParams outLocation) {
+            mReplay.getLocations(mPlayer != null ? mPlayer.getClock() : mReplay.getStartClock(), mLocations);
+
+            outLocation.x = mLocations[position * 2];
+            outLocation.y = mLocations[position * 2 + 1];
+            outLocation.viewportLeft = 0F;
+            outLocation.viewportTop = 0F;
+            outLocation.viewportRight = 1F;
+            outLocation.viewportBottom = 1F;
+        }
+    }
+
+    private static void layout(CourtView court) {
+        court.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        court.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mFile = File.createTempFile("court", ".replay", context.getCacheDir());
+
+        // one entity running from the right of the court to the left.
+        CourtReplay.write(mFile, 1, new int[]{0, 1000}, new float[]{.9F, .5F, .1F, .5F}, 2);
+        mReplay = CourtReplay.open(mFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mReplay.close();
+
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @Test
+    @UiThreadTest
+    public void seekingMovesCulledMarkersIntoTheView() {
+        final CourtView court = new CourtView(InstrumentationRegistry.getTargetContext());
+        court.setCourt(new CourtPlaceholderDrawable(940, 500, 0));
+        court.setExpanded(true, false);
+        court.setCourtZoomEnabled(true);
+
+        final ReplayAdapter adapter = new ReplayAdapter();
+        court.setAdapter(adapter);
+        layout(court);
+
+        // zooms into the left of the court, the entity on the right is culled.
+        court.setCourtZoom(court.getCourtMaxZoom(), 0F, HEIGHT * .5F);
+        layout(court);
+        assertEquals(0, court.getChildCount());
+
+        final CourtReplayPlayer player = new CourtReplayPlayer(court, mReplay);
+        adapter.mPlayer = player;
+
+        player.seekTo(mReplay.getEndClock());
+        assertTrue(court.isLayoutRequested());
+
+        layout(court);
+        assertEquals(1, court.getChildCount());
+
+        player.release();
+    }
+}
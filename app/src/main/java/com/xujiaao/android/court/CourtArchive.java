@@ -0,0 +1,301 @@
+package com.xujiaao.android.court;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packed court floors (of every team, for example), read through a memory-mapped file. Only the index is read when
+ * the archive is opened, a floor is decoded when it is requested.
+ * <p>
+ * The file is made of a header, the index and the encoded floors (PNG, WebP, ...). All values are little endian:
+ * <pre>
+ * int magic, int version, int entryCount
+ * entry[entryCount]: byte[16] name (ASCII, zero padded), int offset, int length,
+ *                    int width, int height, int insetLeft, int insetTop, int insetRight, int insetBottom
+ * byte[] floors
+ * </pre>
+ * Width, height and insets are in pixels of the floor, same as the court insets of {@link CourtView}.
+ * <p>
+ * An archive in the assets MUST be stored uncompressed to be mapped, see {@code aaptOptions.noCompress}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtArchive implements Closeable {
+
+    private static final int MAGIC = 0x43524143; // "CARC"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int NAME_SIZE = 16;
+    private static final int ENTRY_SIZE = NAME_SIZE + 32;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final Closeable mSource;
+
+    private final ByteBuffer mBuffer;
+    private final String[] mNames;
+
+    private CourtArchive(Closeable source, MappedByteBuffer buffer) throws IOException {
+        mSource = source;
+        mBuffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a court archive.");
+        }
+
+        final int count = buffer.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.capacity()) {
+            throw new IOException("Court archive is truncated.");
+        }
+
+        final String[] names = new String[count];
+        final byte[] name = new byte[NAME_SIZE];
+
+        for (int index = 0; index < count; index++) {
+            final int entry = HEADER_SIZE + index * ENTRY_SIZE;
+            final int offset = buffer.getInt(entry + NAME_SIZE);
+            final int length = buffer.getInt(entry + NAME_SIZE + 4);
+            if (offset < 0 || length < 0 || (long) offset + length > buffer.capacity()) {
+                throw new IOException("Court archive is truncated.");
+            }
+
+            buffer.position(entry);
+            buffer.get(name);
+
+            int nameLength = 0;
+            while (nameLength < NAME_SIZE && name[nameLength] != 0) {
+                nameLength++;
+            }
+
+            names[index] = new String(name, 0, nameLength, ASCII);
+        }
+
+        mNames = names;
+    }
+
+    public static CourtArchive open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            final FileChannel channel = raf.getChannel();
+            return new CourtArchive(raf, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an archive of the assets, the archive MUST be stored uncompressed.
+     */
+    public static CourtArchive open(AssetManager assets, String name) throws IOException {
+        final AssetFileDescriptor afd = assets.openFd(name);
+
+        try {
+            // the mapping stays valid after the stream is closed.
+            final MappedByteBuffer buffer;
+            final FileInputStream in = afd.createInputStream();
+            try {
+                buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+            } finally {
+                in.close();
+            }
+
+            return new CourtArchive(afd, buffer);
+        } catch (IOException e) {
+            afd.close();
+            throw e;
+        }
+    }
+
+    public int getEntryCount() {
+        return mNames.length;
+    }
+
+    /**
+     * @return -1 if there is no entry of the name.
+     */
+    public int indexOf(String name) {
+        final String[] names = mNames;
+        for (int index = 0; index < names.length; index++) {
+            if (names[index].equals(name)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    public String getName(int index) {
+        return mNames[index];
+    }
+
+    public int getWidth(int index) {
+        return getInt(index, 8);
+    }
+
+    public int getHeight(int index) {
+        return getInt(index, 12);
+    }
+
+    public int getInsetLeft(int index) {
+        return getInt(index, 16);
+    }
+
+    public int getInsetTop(int index) {
+        return getInt(index, 20);
+    }
+
+    public int getInsetRight(int index) {
+        return getInt(index, 24);
+    }
+
+    public int getInsetBottom(int index) {
+        return getInt(index, 28);
+    }
+
+    private int getInt(int index, int field) {
+        if (index < 0 || index >= mNames.length) {
+            throw new IndexOutOfBoundsException("Invalid entry: " + index);
+        }
+
+        return mBuffer.getInt(HEADER_SIZE + index * ENTRY_SIZE + NAME_SIZE + field);
+    }
+
+    /**
+     * Decodes the floor of an entry, safe to be called on any thread. A floor with a target size is sampled down to
+     * the smallest power of 2 not smaller than the size.
+     *
+     * @param width  target width, or 0 for the size of the floor.
+     * @param height target height, or 0 for the size of the floor.
+     * @return null if the floor can not be decoded.
+     */
+    @Nullable
+    public Bitmap decode(int index, int width, int height, Bitmap.Config config) {
+        final int offset = getInt(index, 0);
+        final int length = getInt(index, 4);
+
+        // the buffer is shared by threads, its position is never touched.
+        final ByteBuffer source = mBuffer.duplicate();
+        source.position(offset);
+
+        final byte[] data = new byte[length];
+        source.get(data);
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        int sample = 1;
+        if (width > 0 && height > 0) {
+            final int w = getWidth(index);
+            final int h = getHeight(index);
+
+            while (w / (sample * 2) >= width && h / (sample * 2) >= height) {
+                sample *= 2;
+            }
+        }
+
+        options.inSampleSize = sample;
+        options.inPreferredConfig = config;
+
+        return BitmapFactory.decodeByteArray(data, 0, length, options);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSource.close();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Writer
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Packs encoded floors into an archive file.
+     */
+    public static class Writer {
+
+        private final List<String> mNames = new ArrayList<>();
+        private final List<byte[]> mFloors = new ArrayList<>();
+        private final List<int[]> mMetrics = new ArrayList<>();
+
+        /**
+         * @param floor  encoded floor.
+         * @param width  width of the floor in pixels.
+         * @param height height of the floor in pixels.
+         */
+        public Writer add(String name, byte[] floor, int width, int height,
+                          int insetLeft, int insetTop, int insetRight, int insetBottom)
+                throws IllegalArgumentException {
+            if (name.getBytes(ASCII).length > NAME_SIZE) {
+                throw new IllegalArgumentException("Name MUST be at most " + NAME_SIZE + " ASCII characters.");
+            }
+
+            mNames.add(name);
+            mFloors.add(floor);
+            mMetrics.add(new int[]{width, height, insetLeft, insetTop, insetRight, insetBottom});
+
+            return this;
+        }
+
+        public void write(File file) throws IOException {
+            final int count = mNames.size();
+
+            long size = HEADER_SIZE + (long) count * ENTRY_SIZE;
+            for (int index = 0; index < count; index++) {
+                size += mFloors.get(index).length;
+            }
+
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+            try {
+                raf.setLength(size);
+
+                final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(count);
+
+                int offset = HEADER_SIZE + count * ENTRY_SIZE;
+                for (int index = 0; index < count; index++) {
+                    final byte[] name = mNames.get(index).getBytes(ASCII);
+                    buffer.put(name);
+                    buffer.put(new byte[NAME_SIZE - name.length]);
+
+                    buffer.putInt(offset);
+                    buffer.putInt(mFloors.get(index).length);
+                    for (int metric : mMetrics.get(index)) {
+                        buffer.putInt(metric);
+                    }
+
+                    offset += mFloors.get(index).length;
+                }
+
+                for (int index = 0; index < count; index++) {
+                    buffer.put(mFloors.get(index));
+                }
+
+                buffer.force();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.xujiaao.android.court;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.util.TypedValue;
+
+/**
+ * Decoded court bitmaps shared by all the {@link CourtView}s of the process, keyed by resource, density of the
+ * {@link Resources}, target size and config, and bounded by a memory budget.
+ * <p>
+ * Bitmaps are never recycled by the cache, evicted bitmaps are still usable by the views drawing them.
+ */
+final class CourtBitmapCache {
+
+    private static final int MAX_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private static CourtBitmapCache sInstance;
+
+    private final BitmapCache mCache;
+
+    private CourtBitmapCache(int maxSize) {
+        mCache = new BitmapCache(maxSize);
+    }
+
+    static synchronized CourtBitmapCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new CourtBitmapCache((int) Math.min(Runtime.getRuntime().maxMemory() / 8, MAX_CACHE_SIZE));
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Gets the bitmap of the resource, decodes it if it is not cached. A bitmap with a target size is sampled down
+     * to the smallest power of 2 not smaller than the size, and keeps the intrinsic size of the resource. Samples
+     * divide the density of the bitmap, e.g. a bitmap of 420 dpi is sampled by 4 at most.
+     *
+     * @param width  target width, or 0 for the size of the resource.
+     * @param height target height, or 0 for the size of the resource.
+     * @return null if the resource is not a bitmap.
+     */
+    @Nullable
+    Bitmap get(Resources res, int resource, int width, int height, Bitmap.Config config) {
+        final Key key = new Key(resource, res.getDisplayMetrics().densityDpi, width, height, config);
+
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(res, resource, width, height, config);
+
+            if (bitmap != null) {
+                mCache.put(key, bitmap);
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Same as {@link #get(Resources, int, int, int, Bitmap.Config)}, but never decodes.
+     */
+    @Nullable
+    Bitmap peek(Resources res, int resource, int width, int height, Bitmap.Config config) {
+        return mCache.get(new Key(resource, res.getDisplayMetrics().densityDpi, width, height, config));
+    }
+
+    /**
+     * Reads the intrinsic size of a bitmap resource from its header, without decoding the pixels.
+     *
+     * @return false if the resource is not a bitmap.
+     */
+    static boolean getIntrinsicSize(Resources res, int resource, int[] outSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(res, resource, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return false;
+        }
+
+        final TypedValue value = new TypedValue();
+        res.getValue(resource, value, true);
+
+        // same as the scaling of BitmapFactory#decodeResource and BitmapDrawable.
+        int density = value.density;
+        if (density == TypedValue.DENSITY_DEFAULT) {
+            density = DisplayMetrics.DENSITY_DEFAULT;
+        }
+
+        final int targetDensity = res.getDisplayMetrics().densityDpi;
+        if (density == TypedValue.DENSITY_NONE || density == targetDensity) {
+            outSize[0] = options.outWidth;
+            outSize[1] = options.outHeight;
+        } else {
+            outSize[0] = (options.outWidth * targetDensity + (density >> 1)) / density;
+            outSize[1] = (options.outHeight * targetDensity + (density >> 1)) / density;
+        }
+
+        return true;
+    }
+
+    void evictAll() {
+        mCache.evictAll();
+    }
+
+    @Nullable
+    private static Bitmap decode(Resources res, int resource, int width, int height, Bitmap.Config config) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        int sample = 1;
+        if (width > 0 && height > 0) {
+            options.inJustDecodeBounds = true;
+            options.inScaled = false;
+            BitmapFactory.decodeResource(res, resource, options);
+
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            // density of the unscaled bitmap, divided by the sample to keep the intrinsic size exactly.
+            final int density = options.inDensity != 0 ? options.inDensity : res.getDisplayMetrics().densityDpi;
+
+            while (options.outWidth / (sample * 2) >= width && options.outHeight / (sample * 2) >= height
+                    && density % (sample * 2) == 0) {
+                sample *= 2;
+            }
+
+            options.inJustDecodeBounds = false;
+        }
+
+        options.inSampleSize = sample;
+        options.inPreferredConfig = config;
+
+        final Bitmap bitmap = BitmapFactory.decodeResource(res, resource, options);
+        if (bitmap != null && sample > 1 && bitmap.getDensity() > 0) {
+            // keeps the intrinsic size of the resource.
+            bitmap.setDensity(bitmap.getDensity() / sample);
+        }
+
+        return bitmap;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Tools
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static class Key {
+
+        private final int mResource;
+        private final int mDensity;
+        private final int mWidth;
+        private final int mHeight;
+        private final Bitmap.Config mConfig;
+
+        Key(int resource, int density, int width, int height, Bitmap.Config config) {
+            mResource = resource;
+            mDensity = density;
+            mWidth = width;
+            mHeight = height;
+            mConfig = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return mResource == key.mResource && mDensity == key.mDensity && mWidth == key.mWidth && mHeight == key.mHeight
+                    && mConfig == key.mConfig;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mResource;
+            result = 31 * result + mDensity;
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            result = 31 * result + (mConfig != null ? mConfig.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static class BitmapCache extends LruCache<Key, Bitmap> {
+
+        BitmapCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Key key, Bitmap value) {
+            return value.getByteCount();
+        }
+    }
+}
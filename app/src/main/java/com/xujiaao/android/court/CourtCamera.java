@@ -0,0 +1,184 @@
+package com.xujiaao.android.court;
+
+/**
+ * Pure-Java replacement of the {@code android.graphics.Camera} calls used by {@link CourtView}.
+ * <p>
+ * Matrices are plain {@code float[9]} arrays laid out like {@code android.graphics.Matrix#getValues(float[])}.
+ * Instances are immutable, all temporary storage is provided by the caller, so a {@code CourtCamera} can be shared
+ * across threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtCamera {
+
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    public static final int MATRIX_SIZE = 9;
+
+    public static final int STATE_CAMERA_Y = 0;
+    public static final int STATE_CAMERA_Z = 1;
+    public static final int STATE_COURT_START_Y = 2;
+    public static final int STATE_COURT_START_Z = 3;
+    public static final int STATE_COURT_END_Y = 4;
+    public static final int STATE_COURT_END_Z = 5;
+
+    public static final int STATE_SIZE = 6;
+
+    // SkCamera3D is located at (0, 0, -8) inches, 72 pixels per inch.
+    public static final float DEFAULT_CAMERA_LOCATION = 8F * 72F;
+
+    private final float mCameraLocation;
+    private final int mDefaultCameraDistance;
+
+    public CourtCamera() {
+        this(DEFAULT_CAMERA_LOCATION);
+    }
+
+    public CourtCamera(float cameraLocation) {
+        mCameraLocation = cameraLocation;
+        mDefaultCameraDistance = getDefaultCameraDistance();
+    }
+
+    private int getDefaultCameraDistance() {
+        final float sz = 100F;
+        final float sy = 100F;
+
+        final float[] matrix = new float[MATRIX_SIZE];
+        getCameraMatrix(sz, 0F, matrix);
+
+        return Math.round(sz / (sy / mapY(matrix, 0F, sy) - 1F));
+    }
+
+    public int getCameraDistance() {
+        return mDefaultCameraDistance;
+    }
+
+    /**
+     * Same as {@code camera.translate(0F, 0F, tz); camera.rotateX(rotate); camera.getMatrix(matrix);}.
+     */
+    public float[] getCameraMatrix(float tz, float rotate, float[] matrix) {
+        final double radians = rotate * Math.PI / 180D;
+        final float s = (float) Math.sin(radians);
+        final float c = (float) Math.cos(radians);
+
+        final float l = mCameraLocation;
+        final float dot = tz + l;
+
+        matrix[MSCALE_X] = l / dot;
+        matrix[MSKEW_X] = 0F;
+        matrix[MTRANS_X] = 0F;
+        matrix[MSKEW_Y] = 0F;
+        matrix[MSCALE_Y] = l * c / dot;
+        matrix[MTRANS_Y] = 0F;
+        matrix[MPERSP_0] = 0F;
+        matrix[MPERSP_1] = -s / dot;
+        matrix[MPERSP_2] = 1F;
+
+        return matrix;
+    }
+
+    /**
+     * Height of the court below which {@link #getMatrix(float, int, float, float, float[])} has no solution, matrices
+     * of shorter courts are not finite.
+     */
+    public float getMinHeight(float scaleX) {
+        final float d = mDefaultCameraDistance;
+        return d / scaleX - d;
+    }
+
+    public float[] getMatrix(float progress, int height, float scaleX, float scaleY, float[] matrix) {
+        return getMatrix(progress, height, scaleX, scaleY, matrix, null);
+    }
+
+    public float[] getMatrix(float progress, int height, float scaleX, float scaleY, float[] matrix, float[] state) {
+        final float d = mDefaultCameraDistance;
+        final float h = height;
+
+        final float sz = d / scaleX - d;
+        final float ez = sz * (1F - progress);
+
+        final float cy = .5F * ((float) Math.sqrt(h * h - sz * sz) - scaleY * h) * progress;
+        final float ch = .5F * (float) Math.sqrt(h * h - sz * sz * progress * progress);
+
+        final float sy = cy + ch;
+        final float ey = cy - ch;
+
+        final float rotate = (float) (Math.asin((sz - ez) / h) * 180D / Math.PI);
+        final float offset = (2F * d * d * cy + d * (sz * ey + ez * sy)) / (d * (sz + ez) + sz * ez);
+
+        final float ty = .5F * h * (cy + offset) / ch;
+        final float tz = .5F * (ez * (sy + offset) - sz * (ey + offset)) / ch;
+
+        getCameraMatrix(tz, rotate, matrix);
+
+        // matrix.preTranslate(0F, -ty);
+        matrix[MTRANS_X] -= matrix[MSKEW_X] * ty;
+        matrix[MTRANS_Y] -= matrix[MSCALE_Y] * ty;
+        matrix[MPERSP_2] -= matrix[MPERSP_1] * ty;
+
+        // matrix.postTranslate(0F, offset);
+        matrix[MSKEW_Y] += matrix[MPERSP_0] * offset;
+        matrix[MSCALE_Y] += matrix[MPERSP_1] * offset;
+        matrix[MTRANS_Y] += matrix[MPERSP_2] * offset;
+
+        if (state != null) {
+            state[STATE_CAMERA_Y] = -offset;
+            state[STATE_CAMERA_Z] = -d;
+            state[STATE_COURT_START_Y] = sy;
+            state[STATE_COURT_START_Z] = sz;
+            state[STATE_COURT_END_Y] = ey;
+            state[STATE_COURT_END_Z] = ez;
+        }
+
+        return matrix;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Matrix
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Same as {@code android.graphics.Matrix#mapPoints(float[], int, float[], int, int)}.
+     */
+    public static void mapPoints(float[] matrix, float[] dst, int dstIndex, float[] src, int srcIndex, int pointCount) {
+        final float m0 = matrix[MSCALE_X];
+        final float m1 = matrix[MSKEW_X];
+        final float m2 = matrix[MTRANS_X];
+        final float m3 = matrix[MSKEW_Y];
+        final float m4 = matrix[MSCALE_Y];
+        final float m5 = matrix[MTRANS_Y];
+        final float m6 = matrix[MPERSP_0];
+        final float m7 = matrix[MPERSP_1];
+        final float m8 = matrix[MPERSP_2];
+
+        for (int index = 0; index < pointCount; index++) {
+            final float x = src[srcIndex++];
+            final float y = src[srcIndex++];
+
+            float w = m6 * x + m7 * y + m8;
+            if (w != 0F) {
+                w = 1F / w;
+            }
+
+            dst[dstIndex++] = (m0 * x + m1 * y + m2) * w;
+            dst[dstIndex++] = (m3 * x + m4 * y + m5) * w;
+        }
+    }
+
+    public static float mapX(float[] matrix, float x, float y) {
+        final float w = matrix[MPERSP_0] * x + matrix[MPERSP_1] * y + matrix[MPERSP_2];
+        return w != 0F ? (matrix[MSCALE_X] * x + matrix[MSKEW_X] * y + matrix[MTRANS_X]) / w : 0F;
+    }
+
+    public static float mapY(float[] matrix, float x, float y) {
+        final float w = matrix[MPERSP_0] * x + matrix[MPERSP_1] * y + matrix[MPERSP_2];
+        return w != 0F ? (matrix[MSKEW_Y] * x + matrix[MSCALE_Y] * y + matrix[MTRANS_Y]) / w : 0F;
+    }
+}
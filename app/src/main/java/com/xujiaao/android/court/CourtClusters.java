@@ -0,0 +1,111 @@
+package com.xujiaao.android.court;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates of points of the court (in range [0, 1]) in grids of several levels, level k splits the court into
+ * 2^k x 2^k cells. Every cell keeps the count and the sum of its points, so adding, removing or moving a point
+ * updates one cell per level, and the clusters of any level are read without visiting the points.
+ */
+final class CourtClusters {
+
+    static final int LEVEL_COUNT = 7;
+
+    private final int[][] mCounts = new int[LEVEL_COUNT][];
+    private final double[][] mSumXs = new double[LEVEL_COUNT][];
+    private final double[][] mSumYs = new double[LEVEL_COUNT][];
+
+    // xor of the ids of the points (plus 1), which is the id of the point of a cell of one point.
+    private final int[][] mMembers = new int[LEVEL_COUNT][];
+
+    CourtClusters() {
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            final int size = getCellCount(level);
+            mCounts[level] = new int[size];
+            mSumXs[level] = new double[size];
+            mSumYs[level] = new double[size];
+            mMembers[level] = new int[size];
+        }
+    }
+
+    static int getCellCount(int level) {
+        return 1 << (level * 2);
+    }
+
+    void clear() {
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            Arrays.fill(mCounts[level], 0);
+            Arrays.fill(mSumXs[level], 0D);
+            Arrays.fill(mSumYs[level], 0D);
+            Arrays.fill(mMembers[level], 0);
+        }
+    }
+
+    void add(int id, float x, float y) {
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            update(level, getCell(level, x, y), id, x, y, 1);
+        }
+    }
+
+    void remove(int id, float x, float y) {
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            update(level, getCell(level, x, y), id, x, y, -1);
+        }
+    }
+
+    void move(int id, float fromX, float fromY, float toX, float toY) {
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            final int from = getCell(level, fromX, fromY);
+            final int to = getCell(level, toX, toY);
+
+            if (from == to) {
+                mSumXs[level][to] += toX - fromX;
+                mSumYs[level][to] += toY - fromY;
+            } else {
+                update(level, from, id, fromX, fromY, -1);
+                update(level, to, id, toX, toY, 1);
+            }
+        }
+    }
+
+    private void update(int level, int cell, int id, float x, float y, int delta) {
+        final int count = mCounts[level][cell] += delta;
+
+        if (count == 0) {
+            // drops the rounding errors of the sums.
+            mSumXs[level][cell] = 0D;
+            mSumYs[level][cell] = 0D;
+        } else {
+            mSumXs[level][cell] += x * delta;
+            mSumYs[level][cell] += y * delta;
+        }
+
+        mMembers[level][cell] ^= id + 1;
+    }
+
+    int getCount(int level, int cell) {
+        return mCounts[level][cell];
+    }
+
+    float getCenterX(int level, int cell) {
+        return (float) (mSumXs[level][cell] / mCounts[level][cell]);
+    }
+
+    float getCenterY(int level, int cell) {
+        return (float) (mSumYs[level][cell] / mCounts[level][cell]);
+    }
+
+    /**
+     * Id of the point of a cell of one point.
+     */
+    int getMember(int level, int cell) {
+        return mMembers[level][cell] - 1;
+    }
+
+    private static int getCell(int level, float x, float y) {
+        final int size = 1 << level;
+        final int col = Math.max(0, Math.min((int) (x * size), size - 1));
+        final int row = Math.max(0, Math.min((int) (y * size), size - 1));
+        return row * size + col;
+    }
+}
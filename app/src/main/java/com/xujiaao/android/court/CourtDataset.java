@@ -0,0 +1,432 @@
+package com.xujiaao.android.court;
+
+import android.view.Gravity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Markers stored in parallel primitive arrays, one array per attribute, drawn by {@link CourtView} without any item
+ * object, {@link CourtView.LayoutParams} or view per marker.
+ * <p>
+ * Locations are in units of the viewport of every marker, same as {@link CourtView.LayoutParams}. Bulk operations
+ * notify the view once. A dataset MUST be modified on the UI thread once it is set to a view.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtDataset {
+
+    public static final int FLAG_HIDDEN = 1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int mSize;
+
+    private float[] mX;
+    private float[] mY;
+    private float[] mViewportLefts;
+    private float[] mViewportTops;
+    private float[] mViewportRights;
+    private float[] mViewportBottoms;
+    private int[] mGravities;
+    private int[] mColors;
+    private float[] mSizes;
+    private int[] mFlags;
+
+    private float mDefaultViewportLeft = 0F;
+    private float mDefaultViewportTop = 0F;
+    private float mDefaultViewportRight = 1F;
+    private float mDefaultViewportBottom = 1F;
+
+    private final List<Observer> mObservers = new ArrayList<>();
+
+    public CourtDataset() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CourtDataset(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        mX = grow(mX, capacity);
+        mY = grow(mY, capacity);
+        mViewportLefts = grow(mViewportLefts, capacity);
+        mViewportTops = grow(mViewportTops, capacity);
+        mViewportRights = grow(mViewportRights, capacity);
+        mViewportBottoms = grow(mViewportBottoms, capacity);
+        mGravities = grow(mGravities, capacity);
+        mColors = grow(mColors, capacity);
+        mSizes = grow(mSizes, capacity);
+        mFlags = grow(mFlags, capacity);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (mX.length < capacity) {
+            allocate(Math.max(capacity, mX.length * 2));
+        }
+    }
+
+    private float[] grow(float[] array, int capacity) {
+        final float[] result = new float[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, mSize);
+        }
+
+        return result;
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        final int[] result = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, mSize);
+        }
+
+        return result;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Viewport of the markers added later.
+     */
+    public void setDefaultViewport(float left, float top, float right, float bottom) {
+        mDefaultViewportLeft = left;
+        mDefaultViewportTop = top;
+        mDefaultViewportRight = right;
+        mDefaultViewportBottom = bottom;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Bulk
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param size diameter of the marker, in pixels of the expanded court.
+     * @return index of the marker.
+     */
+    public int add(float x, float y, int color, float size) {
+        ensureCapacity(mSize + 1);
+        put(mSize, x, y, color, size);
+        mSize++;
+
+        notifyAppended(mSize - 1, 1);
+        return mSize - 1;
+    }
+
+    /**
+     * @param locations x and y of the markers.
+     * @param sizes     diameters of the markers, in pixels of the expanded court.
+     */
+    public void addAll(float[] locations, int[] colors, float[] sizes, int count) {
+        ensureCapacity(mSize + count);
+
+        for (int index = 0; index < count; index++) {
+            put(mSize + index, locations[index * 2], locations[index * 2 + 1], colors[index], sizes[index]);
+        }
+
+        mSize += count;
+
+        notifyAppended(mSize - count, count);
+    }
+
+    private void put(int index, float x, float y, int color, float size) {
+        mX[index] = x;
+        mY[index] = y;
+        mViewportLefts[index] = mDefaultViewportLeft;
+        mViewportTops[index] = mDefaultViewportTop;
+        mViewportRights[index] = mDefaultViewportRight;
+        mViewportBottoms[index] = mDefaultViewportBottom;
+        mGravities[index] = Gravity.CENTER;
+        mColors[index] = color;
+        mSizes[index] = size;
+        mFlags[index] = 0;
+    }
+
+    public void setLocation(int index, float x, float y) {
+        checkIndex(index, 1);
+
+        mX[index] = x;
+        mY[index] = y;
+
+        notifyLocationsChanged(index, 1);
+    }
+
+    /**
+     * @param locations x and y of the markers from start.
+     */
+    public void setLocations(int start, float[] locations, int count) {
+        checkIndex(start, count);
+
+        final float[] xs = mX;
+        final float[] ys = mY;
+        for (int index = 0; index < count; index++) {
+            xs[start + index] = locations[index * 2];
+            ys[start + index] = locations[index * 2 + 1];
+        }
+
+        notifyLocationsChanged(start, count);
+    }
+
+    public void remove(int index) {
+        removeRange(index, 1);
+    }
+
+    /**
+     * Removes the markers in [start, start + count), markers after them are moved forward.
+     */
+    public void removeRange(int start, int count) {
+        checkIndex(start, count);
+
+        final int from = start + count;
+        final int moved = mSize - from;
+
+        System.arraycopy(mX, from, mX, start, moved);
+        System.arraycopy(mY, from, mY, start, moved);
+        System.arraycopy(mViewportLefts, from, mViewportLefts, start, moved);
+        System.arraycopy(mViewportTops, from, mViewportTops, start, moved);
+        System.arraycopy(mViewportRights, from, mViewportRights, start, moved);
+        System.arraycopy(mViewportBottoms, from, mViewportBottoms, start, moved);
+        System.arraycopy(mGravities, from, mGravities, start, moved);
+        System.arraycopy(mColors, from, mColors, start, moved);
+        System.arraycopy(mSizes, from, mSizes, start, moved);
+        System.arraycopy(mFlags, from, mFlags, start, moved);
+
+        mSize -= count;
+
+        notifyChanged();
+    }
+
+    public void clear() {
+        mSize = 0;
+
+        notifyChanged();
+    }
+
+    private void checkIndex(int start, int count) throws IndexOutOfBoundsException {
+        if (start < 0 || count < 0 || start + count > mSize) {
+            throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + (start + count) + ") of " + mSize);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Attributes
+    // -----------------------------------------------------------------------------------------------------------------
+
+    public float getX(int index) {
+        return mX[index];
+    }
+
+    public float getY(int index) {
+        return mY[index];
+    }
+
+    /**
+     * X of the marker in range [0, 1] of its viewport.
+     */
+    public float getFractionX(int index) {
+        final float left = mViewportLefts[index];
+        final float right = mViewportRights[index];
+        return right != left ? (mX[index] - left) / (right - left) : 0F;
+    }
+
+    /**
+     * Y of the marker in range [0, 1] of its viewport.
+     */
+    public float getFractionY(int index) {
+        final float top = mViewportTops[index];
+        final float bottom = mViewportBottoms[index];
+        return bottom != top ? (mY[index] - top) / (bottom - top) : 0F;
+    }
+
+    public void setViewport(int index, float left, float top, float right, float bottom) {
+        checkIndex(index, 1);
+
+        mViewportLefts[index] = left;
+        mViewportTops[index] = top;
+        mViewportRights[index] = right;
+        mViewportBottoms[index] = bottom;
+
+        notifyLocationsChanged(index, 1);
+    }
+
+    /**
+     * Gravity of the marker to its location, the marker is drawn on that side of the location like a child of
+     * {@link CourtView.LayoutParams#gravity}.
+     */
+    public int getGravity(int index) {
+        return mGravities[index];
+    }
+
+    public void setGravity(int index, int gravity) {
+        checkIndex(index, 1);
+
+        if (mGravities[index] != gravity) {
+            mGravities[index] = gravity;
+            notifyAttributesChanged(index, 1);
+        }
+    }
+
+    public int getColor(int index) {
+        return mColors[index];
+    }
+
+    public void setColor(int index, int color) {
+        checkIndex(index, 1);
+
+        if (mColors[index] != color) {
+            mColors[index] = color;
+            notifyAttributesChanged(index, 1);
+        }
+    }
+
+    /**
+     * @param colors colors of the markers from start.
+     */
+    public void setColors(int start, int[] colors, int count) {
+        checkIndex(start, count);
+
+        System.arraycopy(colors, 0, mColors, start, count);
+
+        notifyAttributesChanged(start, count);
+    }
+
+    public float getSize(int index) {
+        return mSizes[index];
+    }
+
+    public void setSize(int index, float size) {
+        checkIndex(index, 1);
+
+        if (mSizes[index] != size) {
+            mSizes[index] = size;
+            notifyAttributesChanged(index, 1);
+        }
+    }
+
+    /**
+     * @param sizes diameters of the markers from start, in pixels of the expanded court.
+     */
+    public void setSizes(int start, float[] sizes, int count) {
+        checkIndex(start, count);
+
+        System.arraycopy(sizes, 0, mSizes, start, count);
+
+        notifyAttributesChanged(start, count);
+    }
+
+    public int getFlags(int index) {
+        return mFlags[index];
+    }
+
+    public void setFlags(int index, int flags) {
+        checkIndex(index, 1);
+
+        if (mFlags[index] != flags) {
+            mFlags[index] = flags;
+            notifyAttributesChanged(index, 1);
+        }
+    }
+
+    /**
+     * @param flags flags of the markers from start.
+     */
+    public void setFlags(int start, int[] flags, int count) {
+        checkIndex(start, count);
+
+        System.arraycopy(flags, 0, mFlags, start, count);
+
+        notifyAttributesChanged(start, count);
+    }
+
+    /**
+     * Sets the flags of the markers in [start, start + count) to the same flags.
+     */
+    public void setFlags(int start, int count, int flags) {
+        checkIndex(start, count);
+
+        Arrays.fill(mFlags, start, start + count, flags);
+
+        notifyAttributesChanged(start, count);
+    }
+
+    public boolean isHidden(int index) {
+        return (mFlags[index] & FLAG_HIDDEN) != 0;
+    }
+
+    /**
+     * Fills x, y, the viewport and gravity of the marker, for {@link CourtView.MarkerAdapter#getItemLocation}.
+     */
+    public void getLocation(int index, CourtView.LayoutParams outLocation) {
+        outLocation.x = mX[index];
+        outLocation.y = mY[index];
+        outLocation.viewportLeft = mViewportLefts[index];
+        outLocation.viewportTop = mViewportTops[index];
+        outLocation.viewportRight = mViewportRights[index];
+        outLocation.viewportBottom = mViewportBottoms[index];
+        outLocation.gravity = mGravities[index];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Observers
+    // -----------------------------------------------------------------------------------------------------------------
+
+    interface Observer {
+
+        /**
+         * Markers are removed or cleared.
+         */
+        void onChanged(CourtDataset dataset);
+
+        /**
+         * Only the locations of the markers in [start, start + count) are changed.
+         */
+        void onLocationsChanged(CourtDataset dataset, int start, int count);
+
+        /**
+         * Markers are appended in [start, start + count), the markers before are not changed.
+         */
+        void onAppended(CourtDataset dataset, int start, int count);
+
+        /**
+         * Only the colors, sizes, flags or gravities of the markers in [start, start + count) are changed.
+         */
+        void onAttributesChanged(CourtDataset dataset, int start, int count);
+    }
+
+    void registerObserver(Observer observer) {
+        if (!mObservers.contains(observer)) {
+            mObservers.add(observer);
+        }
+    }
+
+    void unregisterObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    private void notifyChanged() {
+        for (int index = mObservers.size() - 1; index >= 0; index--) {
+            mObservers.get(index).onChanged(this);
+        }
+    }
+
+    private void notifyAppended(int start, int count) {
+        for (int index = mObservers.size() - 1; index >= 0; index--) {
+            mObservers.get(index).onAppended(this, start, count);
+        }
+    }
+
+    private void notifyAttributesChanged(int start, int count) {
+        for (int index = mObservers.size() - 1; index >= 0; index--) {
+            mObservers.get(index).onAttributesChanged(this, start, count);
+        }
+    }
+
+    private void notifyLocationsChanged(int start, int count) {
+        for (int index = mObservers.size() - 1; index >= 0; index--) {
+            mObservers.get(index).onLocationsChanged(this, start, count);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.xujiaao.android.court;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads shared by all the {@link CourtView}s of the process.
+ */
+final class CourtExecutors {
+
+    private static final int CORE_POOL_SIZE = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 2));
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static Executor sBackgroundExecutor;
+
+    private CourtExecutors() {
+    }
+
+    static synchronized Executor getBackgroundExecutor() {
+        if (sBackgroundExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    CORE_POOL_SIZE, CORE_POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new CourtThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+
+            sBackgroundExecutor = executor;
+        }
+
+        return sBackgroundExecutor;
+    }
+
+    private static class CourtThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                    runnable.run();
+                }
+            }, "CourtView #" + mCount.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.xujiaao.android.court;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+
+/**
+ * Court floor with the intrinsic size of the floor in pixels, whatever the floor is sampled down to.
+ */
+final class CourtFloorDrawable extends BitmapDrawable {
+
+    private final int mWidth;
+    private final int mHeight;
+
+    CourtFloorDrawable(Resources res, Bitmap bitmap, int width, int height) {
+        super(res, bitmap);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+}
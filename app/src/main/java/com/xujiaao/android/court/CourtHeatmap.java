@@ -0,0 +1,315 @@
+package com.xujiaao.android.court;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Density heatmap of court samples. Samples are accumulated into a grid and rendered into a bitmap on a background
+ * thread, the latest rendered bitmap is published for drawing on the UI thread.
+ * <p>
+ * A published bitmap is handed back for rendering only after the UI thread has drawn a newer one, so a bitmap is never
+ * rendered while a recorded frame may still draw it.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtHeatmap {
+
+    private static final int DEFAULT_COLUMN_COUNT = 94;
+    private static final int DEFAULT_ROW_COUNT = 50;
+
+    private static final int MAX_PENDING_SAMPLE_COUNT = 64 * 1024;
+
+    // published, retired (maybe still drawn), rendered (not yet published) and rendering.
+    private static final int MAX_BITMAP_COUNT = 4;
+
+    public interface Callback {
+
+        void onHeatmapUpdated(CourtHeatmap heatmap);
+    }
+
+    private final int mColumnCount;
+    private final int mRowCount;
+
+    // background thread only.
+    private final float[] mDensities;
+    private final int[] mPixels;
+    private float mMaxDensity;
+
+    // guarded by this.
+    private float[] mPendingSamples = new float[1024];
+    private float[] mDrainingSamples = new float[1024];
+    private int mPendingCount;
+    private boolean mClearPending;
+    private boolean mScheduled;
+    private final Bitmap[] mFreeBitmaps = new Bitmap[MAX_BITMAP_COUNT];
+    private int mFreeBitmapCount;
+    private Bitmap mRenderedBitmap;
+
+    // UI thread only.
+    private Bitmap mBitmap;
+    private Bitmap mRetiredBitmap;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mUpdateRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            update();
+        }
+    };
+
+    private final Runnable mPublishRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            publish();
+
+            final Callback callback = mCallback;
+            if (callback != null) {
+                callback.onHeatmapUpdated(CourtHeatmap.this);
+            }
+        }
+    };
+
+    private int[] mColors = {0x000000FF, 0x800000FF, 0xA000FFFF, 0xC000FF00, 0xE0FFFF00, 0xFFFF0000};
+
+    private volatile Callback mCallback;
+
+    public CourtHeatmap() {
+        this(DEFAULT_COLUMN_COUNT, DEFAULT_ROW_COUNT);
+    }
+
+    public CourtHeatmap(int columnCount, int rowCount) throws IllegalArgumentException {
+        if (columnCount <= 0 || rowCount <= 0) {
+            throw new IllegalArgumentException("Column and row count MUST > 0.");
+        }
+
+        mColumnCount = columnCount;
+        mRowCount = rowCount;
+        mDensities = new float[columnCount * rowCount];
+        mPixels = new int[columnCount * rowCount];
+    }
+
+    void setCallback(@Nullable Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Colors from the lowest to the highest density, MUST be set before any sample is added.
+     */
+    public void setColors(int[] colors) throws IllegalArgumentException {
+        if (colors.length < 2) {
+            throw new IllegalArgumentException("At least 2 colors are required.");
+        }
+
+        mColors = colors.clone();
+    }
+
+    /**
+     * Adds a sample of the court, x and y in range [0, 1] of the court insets. Never waits for the rendering, samples
+     * are dropped if the background thread falls too far behind.
+     */
+    public void addSample(float x, float y) {
+        synchronized (this) {
+            if (mPendingCount * 2 + 2 > mPendingSamples.length) {
+                if (mPendingSamples.length >= MAX_PENDING_SAMPLE_COUNT * 2) {
+                    return;
+                }
+
+                final float[] samples = new float[mPendingSamples.length * 2];
+                System.arraycopy(mPendingSamples, 0, samples, 0, mPendingCount * 2);
+                mPendingSamples = samples;
+            }
+
+            mPendingSamples[mPendingCount * 2] = x;
+            mPendingSamples[mPendingCount * 2 + 1] = y;
+            mPendingCount++;
+
+            scheduleLocked();
+        }
+    }
+
+    public void addSamples(float[] points, int count) {
+        for (int index = 0; index < count; index++) {
+            addSample(points[index * 2], points[index * 2 + 1]);
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            mPendingCount = 0;
+            mClearPending = true;
+
+            scheduleLocked();
+        }
+    }
+
+    /**
+     * Latest published bitmap, MUST be called on the UI thread when the heatmap is drawn. The bitmap published before
+     * is handed back for rendering, since it is drawn no more.
+     */
+    @Nullable
+    public Bitmap getBitmap() {
+        if (mRetiredBitmap != null) {
+            releaseBitmap(mRetiredBitmap);
+            mRetiredBitmap = null;
+        }
+
+        return mBitmap;
+    }
+
+    private void publish() {
+        final Bitmap bitmap;
+        synchronized (this) {
+            bitmap = mRenderedBitmap;
+            mRenderedBitmap = null;
+        }
+
+        if (bitmap == null) {
+            return;
+        }
+
+        if (mRetiredBitmap == null) {
+            mRetiredBitmap = mBitmap;
+        } else if (mBitmap != null) {
+            // never drawn, the frame recorded last still draws the retired bitmap.
+            releaseBitmap(mBitmap);
+        }
+
+        mBitmap = bitmap;
+    }
+
+    private synchronized void releaseBitmap(Bitmap bitmap) {
+        mFreeBitmaps[mFreeBitmapCount++] = bitmap;
+    }
+
+    @Nullable
+    private synchronized Bitmap obtainBitmap() {
+        if (mFreeBitmapCount > 0) {
+            final Bitmap bitmap = mFreeBitmaps[--mFreeBitmapCount];
+            mFreeBitmaps[mFreeBitmapCount] = null;
+            return bitmap;
+        }
+
+        return null;
+    }
+
+    private void scheduleLocked() {
+        if (!mScheduled) {
+            mScheduled = true;
+
+            CourtExecutors.getBackgroundExecutor().execute(mUpdateRunnable);
+        }
+    }
+
+    private void update() {
+        boolean changed = false;
+
+        while (true) {
+            final float[] samples;
+            final int count;
+            final boolean clear;
+
+            synchronized (this) {
+                if (mPendingCount == 0 && !mClearPending) {
+                    mScheduled = false;
+                    break;
+                }
+
+                samples = mPendingSamples;
+                count = mPendingCount;
+                clear = mClearPending;
+
+                mPendingSamples = mDrainingSamples;
+                mDrainingSamples = samples;
+                mPendingCount = 0;
+                mClearPending = false;
+            }
+
+            changed |= accumulate(samples, count, clear);
+        }
+
+        if (changed) {
+            render();
+        }
+    }
+
+    private boolean accumulate(float[] samples, int count, boolean clear) {
+        if (clear) {
+            Arrays.fill(mDensities, 0F);
+            mMaxDensity = 0F;
+        }
+
+        final int columns = mColumnCount;
+        final int rows = mRowCount;
+
+        boolean changed = clear;
+        for (int index = 0; index < count; index++) {
+            final float x = samples[index * 2];
+            final float y = samples[index * 2 + 1];
+            if (x < 0F || x > 1F || y < 0F || y > 1F) {
+                continue;
+            }
+
+            final int column = Math.min((int) (x * columns), columns - 1);
+            final int row = Math.min((int) (y * rows), rows - 1);
+            final float density = ++mDensities[row * columns + column];
+            if (density > mMaxDensity) {
+                mMaxDensity = density;
+            }
+
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private void render() {
+        final int[] colors = mColors;
+        final int[] pixels = mPixels;
+        final float[] densities = mDensities;
+        final float max = mMaxDensity;
+
+        for (int index = 0, length = densities.length; index < length; index++) {
+            pixels[index] = max > 0F ? interpolateColor(colors, densities[index] / max) : Color.TRANSPARENT;
+        }
+
+        // bitmaps handed back by the UI thread only, at most MAX_BITMAP_COUNT are created.
+        Bitmap bitmap = obtainBitmap();
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(mColumnCount, mRowCount, Bitmap.Config.ARGB_8888);
+        }
+
+        bitmap.setPixels(pixels, 0, mColumnCount, 0, 0, mColumnCount, mRowCount);
+
+        synchronized (this) {
+            // replaced before it is published.
+            if (mRenderedBitmap != null) {
+                mFreeBitmaps[mFreeBitmapCount++] = mRenderedBitmap;
+            }
+
+            mRenderedBitmap = bitmap;
+        }
+
+        mHandler.post(mPublishRunnable);
+    }
+
+    private static int interpolateColor(int[] colors, float fraction) {
+        final float position = fraction * (colors.length - 1);
+        final int index = Math.min((int) position, colors.length - 2);
+        final float f = position - index;
+
+        final int s = colors[index];
+        final int e = colors[index + 1];
+
+        return Color.argb(
+                Math.round(Color.alpha(s) + (Color.alpha(e) - Color.alpha(s)) * f),
+                Math.round(Color.red(s) + (Color.red(e) - Color.red(s)) * f),
+                Math.round(Color.green(s) + (Color.green(e) - Color.green(s)) * f),
+                Math.round(Color.blue(s) + (Color.blue(e) - Color.blue(s)) * f));
+    }
+}
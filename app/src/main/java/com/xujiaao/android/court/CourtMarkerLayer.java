@@ -0,0 +1,609 @@
+package com.xujiaao.android.court;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.view.GravityCompat;
+import android.support.v4.view.ViewCompat;
+import android.view.Gravity;
+
+import java.util.Arrays;
+
+/**
+ * Markers drawn directly on the court floor. Markers are grouped by color and size when they are set, so drawing
+ * them needs one {@link Canvas#drawPoints(float[], int, int, Paint)} call per group, and no allocation.
+ * <p>
+ * When clustering is enabled, markers are also aggregated in the grids of {@link CourtClusters}, and a level of the
+ * grids is drawn instead: a cell of one marker as the marker, a cell of more markers as a badge of their count.
+ */
+final class CourtMarkerLayer {
+
+    // Float#floatToIntBits(float) never returns the size bits of the key.
+    private static final long HIDDEN_GROUP_KEY = 0x00000000FFFFFFFFL;
+
+    private static final int BADGE_COLOR = 0xCC212121;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBadgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBadgeTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private int mCount;
+    private int mCapacity;
+
+    // markers in the order of the caller, points of the court in range [0, 1].
+    private float[] mPoints = new float[0];
+    private int[] mColors = new int[0];
+    private float[] mSizes = new float[0];
+    private boolean[] mHidden = new boolean[0];
+    private int[] mGravities = new int[0];
+
+    private int mLayoutDirection = ViewCompat.LAYOUT_DIRECTION_LTR;
+
+    // points of the court bounds, grouped by color and size.
+    private float[] mDrawPoints = new float[0];
+    private int[] mDrawIndices = new int[0];
+
+    private boolean mGroupsValid;
+    private int mGroupCount;
+    private int[] mGroupStarts = new int[0];
+    private int[] mGroupColors = new int[0];
+    private float[] mGroupSizes = new float[0];
+    private boolean[] mGroupHidden = new boolean[0];
+    private int[] mGroupCounts = new int[16];
+    private int[] mGroupOfMarkers = new int[0];
+
+    // open addressing table of the keys of the groups, slots hold the group plus 1 and 0 if empty.
+    private long[] mGroupKeys = new long[32];
+    private int[] mGroupSlots = new int[32];
+
+    private final Rect mBounds = new Rect();
+
+    private final CourtSpatialIndex mIndex = new CourtSpatialIndex();
+
+    private CourtClusters mClusters;
+
+    // points of the markers of the cells of one marker, grouped like the draw points.
+    private float[] mClusterPoints = new float[0];
+    private int[] mClusterGroupStarts = new int[0];
+
+    private float mBadgeRadius;
+    private final float[] mBadgePoint = new float[2];
+    private final char[] mBadgeText = new char[10];
+
+    CourtMarkerLayer() {
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        mBadgePaint.setColor(BADGE_COLOR);
+        mBadgeTextPaint.setColor(Color.WHITE);
+        mBadgeTextPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    float getX(int index) {
+        return mPoints[index * 2];
+    }
+
+    float getY(int index) {
+        return mPoints[index * 2 + 1];
+    }
+
+    void setMarkers(float[] points, int[] colors, float[] sizes, int count) {
+        ensureCapacity(count);
+
+        System.arraycopy(points, 0, mPoints, 0, count * 2);
+        System.arraycopy(colors, 0, mColors, 0, count);
+        System.arraycopy(sizes, 0, mSizes, 0, count);
+        for (int index = 0; index < count; index++) {
+            mHidden[index] = false;
+            mGravities[index] = Gravity.CENTER;
+        }
+
+        mCount = count;
+
+        rebuild();
+    }
+
+    /**
+     * Sets the markers of the dataset, hidden markers are neither drawn nor found.
+     */
+    void setMarkers(CourtDataset dataset) {
+        final int count = dataset.size();
+        ensureCapacity(count);
+
+        for (int index = 0; index < count; index++) {
+            putMarker(dataset, index);
+        }
+
+        mCount = count;
+
+        rebuild();
+    }
+
+    /**
+     * Appends the markers of the dataset from start, the markers before are not changed.
+     */
+    void appendMarkers(CourtDataset dataset, int start, int count) {
+        if (start != mCount || start + count > mCapacity) {
+            setMarkers(dataset);
+            return;
+        }
+
+        for (int index = start, end = start + count; index < end; index++) {
+            putMarker(dataset, index);
+
+            if (!mHidden[index]) {
+                final float x = mPoints[index * 2];
+                final float y = mPoints[index * 2 + 1];
+
+                mIndex.set(index, x, y);
+                if (mClusters != null) {
+                    mClusters.add(index, x, y);
+                }
+            }
+        }
+
+        mCount = start + count;
+
+        // regrouped once before the next drawing.
+        mGroupsValid = false;
+    }
+
+    /**
+     * Updates the colors, sizes, gravities and hidden states of the markers of the dataset in [start, start + count), only the
+     * markers hidden or shown are indexed again.
+     */
+    void updateMarkers(CourtDataset dataset, int start, int count) {
+        for (int index = start, end = start + count; index < end; index++) {
+            mColors[index] = dataset.getColor(index);
+            mSizes[index] = dataset.getSize(index);
+            mGravities[index] = dataset.getGravity(index);
+
+            final boolean hidden = dataset.isHidden(index);
+            if (mHidden[index] != hidden) {
+                mHidden[index] = hidden;
+
+                final float x = mPoints[index * 2];
+                final float y = mPoints[index * 2 + 1];
+
+                if (hidden) {
+                    mIndex.remove(index);
+                    if (mClusters != null) {
+                        mClusters.remove(index, x, y);
+                    }
+                } else {
+                    mIndex.set(index, x, y);
+                    if (mClusters != null) {
+                        mClusters.add(index, x, y);
+                    }
+                }
+            }
+        }
+
+        // regrouped once before the next drawing.
+        mGroupsValid = false;
+    }
+
+    private void putMarker(CourtDataset dataset, int index) {
+        mPoints[index * 2] = dataset.getFractionX(index);
+        mPoints[index * 2 + 1] = dataset.getFractionY(index);
+        mColors[index] = dataset.getColor(index);
+        mSizes[index] = dataset.getSize(index);
+        mHidden[index] = dataset.isHidden(index);
+        mGravities[index] = dataset.getGravity(index);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mCapacity < count) {
+            // room for the markers appended later.
+            final int capacity = Math.max(count, mCapacity + mCapacity / 2);
+
+            mPoints = new float[capacity * 2];
+            mColors = new int[capacity];
+            mSizes = new float[capacity];
+            mHidden = new boolean[capacity];
+            mGravities = new int[capacity];
+            mDrawPoints = new float[capacity * 2];
+            mDrawIndices = new int[capacity];
+            mGroupOfMarkers = new int[capacity];
+            mClusterPoints = new float[capacity * 2];
+            mCapacity = capacity;
+        }
+    }
+
+    private void rebuild() {
+        mGroupsValid = false;
+
+        mIndex.reset(mCapacity);
+
+        if (mClusters != null) {
+            mClusters.clear();
+        }
+
+        for (int index = 0; index < mCount; index++) {
+            if (!mHidden[index]) {
+                final float x = mPoints[index * 2];
+                final float y = mPoints[index * 2 + 1];
+
+                mIndex.set(index, x, y);
+                if (mClusters != null) {
+                    mClusters.add(index, x, y);
+                }
+            }
+        }
+    }
+
+    private void ensureGroups() {
+        if (mGroupsValid) {
+            return;
+        }
+
+        final int count = mCount;
+        final int[] colors = mColors;
+        final float[] sizes = mSizes;
+        final boolean[] hidden = mHidden;
+
+        // groups of markers with the same color and size, hidden markers are grouped apart.
+        final int[] groupOfMarkers = mGroupOfMarkers;
+        Arrays.fill(mGroupSlots, 0);
+        Arrays.fill(mGroupCounts, 0);
+
+        int groupCount = 0;
+        for (int index = 0; index < count; index++) {
+            final long key = hidden[index] ? HIDDEN_GROUP_KEY
+                    : ((long) colors[index] << 32) | (Float.floatToIntBits(sizes[index]) & 0xFFFFFFFFL);
+
+            final int slot = findGroupSlot(key);
+            int group = mGroupSlots[slot] - 1;
+            if (group < 0) {
+                group = groupCount++;
+                mGroupKeys[slot] = key;
+                mGroupSlots[slot] = group + 1;
+
+                if (groupCount > mGroupCounts.length) {
+                    mGroupCounts = Arrays.copyOf(mGroupCounts, mGroupCounts.length * 2);
+                }
+
+                if (groupCount * 2 > mGroupSlots.length) {
+                    growGroupSlots();
+                }
+            }
+
+            groupOfMarkers[index] = group;
+            mGroupCounts[group]++;
+        }
+
+        final int[] groupCounts = mGroupCounts;
+        if (mGroupStarts.length < groupCount + 1) {
+            mGroupStarts = new int[groupCount + 1];
+            mGroupColors = new int[groupCount];
+            mGroupSizes = new float[groupCount];
+            mGroupHidden = new boolean[groupCount];
+        }
+
+        for (int group = 0, start = 0; group <= groupCount; group++) {
+            mGroupStarts[group] = start;
+            if (group < groupCount) {
+                start += groupCounts[group];
+                groupCounts[group] = 0;
+            }
+        }
+
+        for (int index = 0; index < count; index++) {
+            final int group = groupOfMarkers[index];
+            mDrawIndices[index] = mGroupStarts[group] + groupCounts[group]++;
+            mGroupColors[group] = colors[index];
+            mGroupSizes[group] = sizes[index];
+            mGroupHidden[group] = hidden[index];
+        }
+
+        mGroupCount = groupCount;
+        mGroupsValid = true;
+
+        for (int index = 0; index < count; index++) {
+            updateDrawPoint(index);
+        }
+    }
+
+    private int findGroupSlot(long key) {
+        final int mask = mGroupSlots.length - 1;
+
+        final int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (mGroupSlots[slot] != 0 && mGroupKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void growGroupSlots() {
+        final long[] keys = mGroupKeys;
+        final int[] slots = mGroupSlots;
+
+        mGroupKeys = new long[keys.length * 2];
+        mGroupSlots = new int[slots.length * 2];
+
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != 0) {
+                final int newSlot = findGroupSlot(keys[slot]);
+                mGroupKeys[newSlot] = keys[slot];
+                mGroupSlots[newSlot] = slots[slot];
+            }
+        }
+    }
+
+    void setMarker(int index, float x, float y) {
+        final float fromX = mPoints[index * 2];
+        final float fromY = mPoints[index * 2 + 1];
+
+        mPoints[index * 2] = x;
+        mPoints[index * 2 + 1] = y;
+
+        if (mGroupsValid) {
+            updateDrawPoint(index);
+        }
+
+        if (!mHidden[index]) {
+            mIndex.set(index, x, y);
+
+            if (mClusters != null) {
+                mClusters.move(index, fromX, fromY, x, y);
+            }
+        }
+    }
+
+    void clear() {
+        mCount = 0;
+        mGroupCount = 0;
+        mGroupsValid = true;
+        mIndex.reset(0);
+
+        if (mClusters != null) {
+            mClusters.clear();
+        }
+    }
+
+    /**
+     * @see CourtSpatialIndex#findNearest(float, float, float, float)
+     */
+    int findNearest(float x, float y, float radiusX, float radiusY) {
+        return mIndex.findNearest(x, y, radiusX, radiusY);
+    }
+
+    void setBounds(Rect bounds) {
+        if (!mBounds.equals(bounds)) {
+            mBounds.set(bounds);
+
+            if (mGroupsValid) {
+                for (int index = 0; index < mCount; index++) {
+                    updateDrawPoint(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gravities of the markers are resolved in the given layout direction, same as the children of the view.
+     */
+    void setLayoutDirection(int layoutDirection) {
+        if (mLayoutDirection != layoutDirection) {
+            mLayoutDirection = layoutDirection;
+
+            if (mGroupsValid) {
+                for (int index = 0; index < mCount; index++) {
+                    updateDrawPoint(index);
+                }
+            }
+        }
+    }
+
+    private void updateDrawPoint(int index) {
+        final Rect bounds = mBounds;
+        final int drawIndex = mDrawIndices[index];
+
+        float x = bounds.left + bounds.width() * mPoints[index * 2];
+        float y = bounds.top + bounds.height() * mPoints[index * 2 + 1];
+
+        // the marker is placed on the side of the point of its gravity, like CourtView#layoutChild.
+        final int gravity = GravityCompat.getAbsoluteGravity(mGravities[index], mLayoutDirection);
+        final float radius = mSizes[index] * .5F;
+
+        switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.LEFT:
+                x += radius;
+                break;
+            case Gravity.RIGHT:
+                x -= radius;
+                break;
+        }
+
+        switch (gravity & Gravity.VERTICAL_GRAVITY_MASK) {
+            case Gravity.TOP:
+                y += radius;
+                break;
+            case Gravity.BOTTOM:
+                y -= radius;
+                break;
+        }
+
+        mDrawPoints[drawIndex * 2] = x;
+        mDrawPoints[drawIndex * 2 + 1] = y;
+    }
+
+    void draw(Canvas canvas) {
+        ensureGroups();
+
+        final Paint paint = mPaint;
+
+        for (int group = 0; group < mGroupCount; group++) {
+            if (mGroupHidden[group]) {
+                continue;
+            }
+
+            final int start = mGroupStarts[group];
+            final int end = mGroupStarts[group + 1];
+
+            paint.setColor(mGroupColors[group]);
+            paint.setStrokeWidth(mGroupSizes[group]);
+            canvas.drawPoints(mDrawPoints, start * 2, (end - start) * 2, paint);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Clustering
+    // -----------------------------------------------------------------------------------------------------------------
+
+    void setClusteringEnabled(boolean enabled) {
+        if (enabled && mClusters == null) {
+            mClusters = new CourtClusters();
+
+            for (int index = 0; index < mCount; index++) {
+                if (!mHidden[index]) {
+                    mClusters.add(index, mPoints[index * 2], mPoints[index * 2 + 1]);
+                }
+            }
+        } else if (!enabled) {
+            mClusters = null;
+        }
+    }
+
+    boolean isClusteringEnabled() {
+        return mClusters != null;
+    }
+
+    /**
+     * @param radius radius of the badges of one digit, in pixels of the screen.
+     */
+    void setBadgeRadius(float radius) {
+        mBadgeRadius = radius;
+        mBadgeTextPaint.setTextSize(radius);
+    }
+
+    /**
+     * Level of the grids whose cells are not smaller than the given size, or -1 if the markers are not clustered.
+     *
+     * @param scaleX    pixels of the screen of the whole width of the markers.
+     * @param scaleY    pixels of the screen of the whole height of the markers.
+     * @param minSize   min size of the cells, in pixels of the screen.
+     */
+    int getClusterLevel(float scaleX, float scaleY, float minSize) {
+        if (mClusters == null || minSize <= 0F) {
+            return -1;
+        }
+
+        final float scale = Math.min(scaleX, scaleY);
+
+        int level = 0;
+        while (level < CourtClusters.LEVEL_COUNT && scale / (1 << (level + 1)) >= minSize) {
+            level++;
+        }
+
+        // even the finest cells are large enough, markers are far from each other.
+        return level < CourtClusters.LEVEL_COUNT ? level : -1;
+    }
+
+    /**
+     * Draws the markers of the cells of one marker, in the coordinates of the court. Markers are grouped like
+     * {@link #draw(Canvas)}, one {@link Canvas#drawPoints(float[], int, int, Paint)} call per group.
+     */
+    void drawClusters(Canvas canvas, int level) {
+        ensureGroups();
+
+        final CourtClusters clusters = mClusters;
+        final int[] groupOfMarkers = mGroupOfMarkers;
+        final int groupCount = mGroupCount;
+        final int cellCount = CourtClusters.getCellCount(level);
+
+        if (mClusterGroupStarts.length < groupCount + 1) {
+            mClusterGroupStarts = new int[groupCount + 1];
+        }
+
+        // counting sort of the markers by their groups.
+        final int[] starts = mClusterGroupStarts;
+        Arrays.fill(starts, 0, groupCount + 1, 0);
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (clusters.getCount(level, cell) == 1) {
+                starts[groupOfMarkers[clusters.getMember(level, cell)] + 1]++;
+            }
+        }
+
+        for (int group = 0; group < groupCount; group++) {
+            starts[group + 1] += starts[group];
+        }
+
+        final float[] drawPoints = mDrawPoints;
+        final float[] points = mClusterPoints;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (clusters.getCount(level, cell) == 1) {
+                final int index = clusters.getMember(level, cell);
+                final int drawIndex = mDrawIndices[index];
+                final int pointIndex = starts[groupOfMarkers[index]]++;
+
+                points[pointIndex * 2] = drawPoints[drawIndex * 2];
+                points[pointIndex * 2 + 1] = drawPoints[drawIndex * 2 + 1];
+            }
+        }
+
+        final Paint paint = mPaint;
+
+        // starts are moved to the ends of the groups.
+        for (int group = 0, start = 0; group < groupCount; group++) {
+            final int end = starts[group];
+            if (end > start && !mGroupHidden[group]) {
+                paint.setColor(mGroupColors[group]);
+                paint.setStrokeWidth(mGroupSizes[group]);
+                canvas.drawPoints(points, start * 2, (end - start) * 2, paint);
+            }
+
+            start = end;
+        }
+    }
+
+    /**
+     * Draws the badges of the cells of more markers, in the coordinates of the screen.
+     *
+     * @param matrix matrix of the court.
+     */
+    void drawClusterBadges(Canvas canvas, Matrix matrix, float centerX, float centerY, int level) {
+        final CourtClusters clusters = mClusters;
+        final Rect bounds = mBounds;
+        final float[] point = mBadgePoint;
+        final char[] text = mBadgeText;
+
+        final float baseline = -(mBadgeTextPaint.ascent() + mBadgeTextPaint.descent()) * .5F;
+
+        for (int cell = 0, cellCount = CourtClusters.getCellCount(level); cell < cellCount; cell++) {
+            final int count = clusters.getCount(level, cell);
+            if (count < 2) {
+                continue;
+            }
+
+            point[0] = bounds.left + bounds.width() * clusters.getCenterX(level, cell);
+            point[1] = bounds.top + bounds.height() * clusters.getCenterY(level, cell);
+            matrix.mapPoints(point);
+
+            final float x = point[0] + centerX;
+            final float y = point[1] + centerY;
+
+            // digits of the count, without allocation.
+            int start = text.length;
+            for (int value = count; value > 0; value /= 10) {
+                text[--start] = (char) ('0' + value % 10);
+            }
+
+            final int digits = text.length - start;
+            canvas.drawCircle(x, y, mBadgeRadius * (1F + .25F * (digits - 1)), mBadgePaint);
+            canvas.drawText(text, start, digits, x, y + baseline, mBadgeTextPaint);
+        }
+    }
+}
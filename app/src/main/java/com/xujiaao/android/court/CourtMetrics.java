@@ -0,0 +1,195 @@
+package com.xujiaao.android.court;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Counters and latency histograms of a {@link CourtView}, recorded on the main thread without any allocation. Every
+ * recorded section is also a trace section, so it shows up in system traces.
+ * <p>
+ * Histograms have power of 2 buckets of nanoseconds, bucket n counts durations in range [2^(n-1), 2^n).
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CourtMetrics {
+
+    public static final int SECTION_MEASURE = 0;
+    public static final int SECTION_LAYOUT = 1;
+    public static final int SECTION_DRAW = 2;
+    public static final int SECTION_MATRIX = 3;
+    public static final int SECTION_COUNT = 4;
+
+    public static final int BUCKET_COUNT = 40;
+
+    private static final String[] SECTION_NAMES = {
+            "CourtView#onMeasure", "CourtView#onLayout", "CourtView#onDraw", "CourtView#getMatrix"};
+
+    private static final long DEFAULT_FRAME_INTERVAL = 16666667L;
+
+    private final long[] mStartTimes = new long[SECTION_COUNT];
+    private final Snapshot mData = new Snapshot();
+
+    private long mFrameInterval = DEFAULT_FRAME_INTERVAL;
+    private long mLastFrameTime;
+
+    CourtMetrics() {
+    }
+
+    void setRefreshRate(float refreshRate) {
+        mFrameInterval = refreshRate > 0F ? (long) (1000000000L / refreshRate) : DEFAULT_FRAME_INTERVAL;
+    }
+
+    void begin(int section) {
+        TraceCompat.beginSection(SECTION_NAMES[section]);
+        mStartTimes[section] = System.nanoTime();
+    }
+
+    void end(int section) {
+        final long duration = System.nanoTime() - mStartTimes[section];
+        TraceCompat.endSection();
+
+        final Snapshot data = mData;
+        data.mCounts[section]++;
+        data.mTotalNanos[section] += duration;
+        data.mMaxNanos[section] = Math.max(data.mMaxNanos[section], duration);
+        data.mHistograms[section * BUCKET_COUNT + getBucket(duration)]++;
+    }
+
+    void onRebind() {
+        mData.mRebindCount++;
+    }
+
+    void onAnimationStart() {
+        mLastFrameTime = 0L;
+    }
+
+    /**
+     * Frames of the court animation, frames later than 1.5 intervals after the last one are counted as dropped.
+     */
+    void onAnimationFrame() {
+        final long now = System.nanoTime();
+        final long last = mLastFrameTime;
+        mLastFrameTime = now;
+
+        final Snapshot data = mData;
+        data.mAnimationFrameCount++;
+
+        if (last != 0L) {
+            final long interval = mFrameInterval;
+            final long elapsed = now - last;
+            if (elapsed * 2 > interval * 3) {
+                data.mDroppedFrameCount += (elapsed + interval / 2) / interval - 1;
+            }
+        }
+    }
+
+    /**
+     * Copies the current metrics into the given snapshot.
+     */
+    public void snapshot(Snapshot outSnapshot) {
+        outSnapshot.set(mData);
+    }
+
+    public void reset() {
+        mData.clear();
+        mLastFrameTime = 0L;
+    }
+
+    private static int getBucket(long duration) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(duration, 0L)), BUCKET_COUNT - 1);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Snapshot
+    // -----------------------------------------------------------------------------------------------------------------
+
+    public static final class Snapshot {
+
+        private final long[] mCounts = new long[SECTION_COUNT];
+        private final long[] mTotalNanos = new long[SECTION_COUNT];
+        private final long[] mMaxNanos = new long[SECTION_COUNT];
+        private final long[] mHistograms = new long[SECTION_COUNT * BUCKET_COUNT];
+
+        private long mRebindCount;
+        private long mAnimationFrameCount;
+        private long mDroppedFrameCount;
+
+        public long getCount(int section) {
+            return mCounts[section];
+        }
+
+        public long getTotalNanos(int section) {
+            return mTotalNanos[section];
+        }
+
+        public long getMaxNanos(int section) {
+            return mMaxNanos[section];
+        }
+
+        public long getBucketCount(int section, int bucket) {
+            return mHistograms[section * BUCKET_COUNT + bucket];
+        }
+
+        /**
+         * Upper bound of the given percentile (in range [0, 1]) of the durations, 0 if there is none.
+         */
+        public long getPercentileNanos(int section, float percentile) {
+            final long count = mCounts[section];
+            if (count == 0L) {
+                return 0L;
+            }
+
+            final long target = Math.max(1L, (long) Math.ceil(count * percentile));
+
+            long sum = 0L;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                sum += mHistograms[section * BUCKET_COUNT + bucket];
+                if (sum >= target) {
+                    return Math.min(1L << bucket, mMaxNanos[section]);
+                }
+            }
+
+            return mMaxNanos[section];
+        }
+
+        /**
+         * Count of children bound again because of data set changes, one per child, children of new items excluded.
+         */
+        public long getRebindCount() {
+            return mRebindCount;
+        }
+
+        public long getAnimationFrameCount() {
+            return mAnimationFrameCount;
+        }
+
+        public long getDroppedFrameCount() {
+            return mDroppedFrameCount;
+        }
+
+        void set(Snapshot source) {
+            System.arraycopy(source.mCounts, 0, mCounts, 0, SECTION_COUNT);
+            System.arraycopy(source.mTotalNanos, 0, mTotalNanos, 0, SECTION_COUNT);
+            System.arraycopy(source.mMaxNanos, 0, mMaxNanos, 0, SECTION_COUNT);
+            System.arraycopy(source.mHistograms, 0, mHistograms, 0, mHistograms.length);
+
+            mRebindCount = source.mRebindCount;
+            mAnimationFrameCount = source.mAnimationFrameCount;
+            mDroppedFrameCount = source.mDroppedFrameCount;
+        }
+
+        void clear() {
+            for (int index = 0; index < SECTION_COUNT; index++) {
+                mCounts[index] = 0L;
+                mTotalNanos[index] = 0L;
+                mMaxNanos[index] = 0L;
+            }
+
+            for (int index = 0; index < mHistograms.length; index++) {
+                mHistograms[index] = 0L;
+            }
+
+            mRebindCount = 0L;
+            mAnimationFrameCount = 0L;
+            mDroppedFrameCount = 0L;
+        }
+    }
+}
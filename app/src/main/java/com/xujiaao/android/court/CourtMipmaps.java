@@ -0,0 +1,189 @@
+package com.xujiaao.android.court;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+/**
+ * Mip chain of the court floor, the tilted floor is drawn in horizontal bands, each band sampled from the level
+ * matching its projected scale.
+ * <p>
+ * Bands of the first level are drawn by the drawable itself. Smaller levels are drawn from a copy of the drawable, so
+ * that its tint and color filter are baked into them, the chain MUST be prepared again when they are changed.
+ */
+final class CourtMipmaps {
+
+    private static final int MAX_LEVEL_COUNT = 4;
+    private static final int BAND_COUNT = 4;
+
+    // levels from 1, the level 0 is the drawable.
+    private final Bitmap[] mLevels = new Bitmap[MAX_LEVEL_COUNT];
+    private int mLevelCount;
+
+    private BitmapDrawable mDrawable;
+    private Bitmap mBitmap;
+    private int mWidth;
+    private int mHeight;
+    private int mAlpha;
+    private int mMinWidth;
+    private int mMinHeight;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final float[] mSrcPoints = new float[(BAND_COUNT + 1) * 4];
+    private final float[] mDstPoints = new float[(BAND_COUNT + 1) * 4];
+
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+
+    static boolean isSupported(@Nullable Bitmap bitmap) {
+        return bitmap != null && !bitmap.isRecycled()
+                && (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || bitmap.getConfig() != Bitmap.Config.HARDWARE);
+    }
+
+    /**
+     * Builds the chain for the given drawable in its bounds, levels smaller than the given size are not needed.
+     * Nothing is built until the bounds are set.
+     */
+    void prepare(BitmapDrawable drawable, int minWidth, int minHeight) {
+        final Bitmap bitmap = drawable.getBitmap();
+        final Rect bounds = drawable.getBounds();
+        if (!isSupported(bitmap) || bounds.isEmpty()) {
+            release();
+            return;
+        }
+
+        if (isPrepared(drawable) && mWidth == bounds.width() && mHeight == bounds.height()
+                && mMinWidth == minWidth && mMinHeight == minHeight) {
+            return;
+        }
+
+        release();
+
+        mDrawable = drawable;
+        mBitmap = bitmap;
+        mWidth = bounds.width();
+        mHeight = bounds.height();
+        mAlpha = drawable.getPaint().getAlpha();
+        mMinWidth = minWidth;
+        mMinHeight = minHeight;
+        mLevelCount = 1;
+
+        Bitmap level = null;
+        int w = bitmap.getWidth() / 2;
+        int h = bitmap.getHeight() / 2;
+
+        while (mLevelCount < MAX_LEVEL_COUNT && w >= Math.max(minWidth, 1) && h >= Math.max(minHeight, 1)) {
+            if (level == null) {
+                level = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+
+                // the alpha of the drawable is applied when the levels are drawn.
+                final Drawable copy = drawable.getConstantState().newDrawable().mutate();
+                copy.setAlpha(0xFF);
+                copy.setBounds(0, 0, w, h);
+                copy.draw(new Canvas(level));
+            } else {
+                level = Bitmap.createScaledBitmap(level, w, h, true);
+            }
+
+            mLevels[mLevelCount++] = level;
+            w /= 2;
+            h /= 2;
+        }
+    }
+
+    boolean isPrepared(@Nullable Drawable drawable) {
+        return mLevelCount > 0 && mDrawable == drawable && mBitmap == mDrawable.getBitmap();
+    }
+
+    /**
+     * @return true if the alpha of the prepared drawable is changed since the last call, the alpha is not baked.
+     */
+    boolean updateAlpha() {
+        final int alpha = mDrawable.getPaint().getAlpha();
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            return true;
+        }
+
+        return false;
+    }
+
+    void release() {
+        for (int index = 0; index < mLevelCount; index++) {
+            mLevels[index] = null;
+        }
+
+        mLevelCount = 0;
+        mDrawable = null;
+        mBitmap = null;
+    }
+
+    /**
+     * Draws the floor into the bounds of the drawable, the canvas MUST be already concatenated with the given matrix.
+     */
+    void draw(Canvas canvas, Matrix matrix) {
+        final BitmapDrawable drawable = mDrawable;
+        final Rect bounds = drawable.getBounds();
+        final float sw = mBitmap.getWidth();
+        final float sh = mBitmap.getHeight();
+
+        final float[] src = mSrcPoints;
+        final float[] dst = mDstPoints;
+
+        for (int band = 0; band <= BAND_COUNT; band++) {
+            final float y = bounds.top + (float) bounds.height() * band / BAND_COUNT;
+            src[band * 4] = bounds.left;
+            src[band * 4 + 1] = y;
+            src[band * 4 + 2] = bounds.right;
+            src[band * 4 + 3] = y;
+        }
+
+        matrix.mapPoints(dst, 0, src, 0, (BAND_COUNT + 1) * 2);
+
+        final Paint paint = mPaint;
+        paint.setAlpha(drawable.getPaint().getAlpha());
+
+        final Rect srcRect = mSrcRect;
+        final RectF dstRect = mDstRect;
+
+        for (int band = 0; band < BAND_COUNT; band++) {
+            final int i = band * 4;
+
+            // projected size of the band, in pixels of the screen per pixel of the source.
+            final float tw = Math.abs(dst[i + 2] - dst[i]);
+            final float bw = Math.abs(dst[i + 6] - dst[i + 4]);
+            final float ph = Math.abs(.5F * (dst[i + 5] + dst[i + 7]) - .5F * (dst[i + 1] + dst[i + 3]));
+
+            float scale = Math.min(Math.min(tw, bw) / sw, ph * BAND_COUNT / sh);
+
+            int level = 0;
+            while (scale <= .5F && level < mLevelCount - 1) {
+                scale *= 2F;
+                level++;
+            }
+
+            dstRect.set(bounds.left, src[i + 1], bounds.right, src[i + 5]);
+
+            if (level == 0) {
+                final int saveCount = canvas.save();
+                canvas.clipRect(dstRect);
+                drawable.draw(canvas);
+                canvas.restoreToCount(saveCount);
+            } else {
+                final Bitmap bitmap = mLevels[level];
+                final int lh = bitmap.getHeight();
+
+                srcRect.set(0, lh * band / BAND_COUNT, bitmap.getWidth(), lh * (band + 1) / BAND_COUNT);
+                canvas.drawBitmap(bitmap, srcRect, dstRect, paint);
+            }
+        }
+    }
+}
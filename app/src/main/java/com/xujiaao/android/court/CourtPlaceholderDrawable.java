@@ -0,0 +1,57 @@
+package com.xujiaao.android.court;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Flat placeholder of the court floor with the intrinsic size of the floor, so that the court can be measured and
+ * laid out before the floor is decoded.
+ */
+final class CourtPlaceholderDrawable extends Drawable {
+
+    private final Paint mPaint = new Paint();
+
+    private final int mWidth;
+    private final int mHeight;
+
+    CourtPlaceholderDrawable(int width, int height, int color) {
+        mWidth = width;
+        mHeight = height;
+        mPaint.setColor(color);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        canvas.drawRect(getBounds(), mPaint);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
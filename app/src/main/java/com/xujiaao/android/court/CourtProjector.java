@@ -0,0 +1,180 @@
+package com.xujiaao.android.court;
+
+/**
+ * Pure-Java projection of the markers of {@link CourtView}: camera matrices of the progress, interpolated from
+ * keyframes baked once per camera, and the projection and culling loops of the layout pass.
+ * <p>
+ * Matrices are plain {@code float[9]} arrays, see {@link CourtCamera}.
+ */
+final class CourtProjector {
+
+    static final int KEYFRAME_COUNT = 64;
+
+    private final CourtCamera mCamera;
+    private CourtTrajectory mTrajectory;
+
+    private int mHeight;
+    private float mScaleX;
+    private float mScaleY;
+
+    private final float[] mKeyframeValues = new float[(KEYFRAME_COUNT + 1) * CourtCamera.MATRIX_SIZE];
+    private final float[] mKeyframeStates = new float[(KEYFRAME_COUNT + 1) * CourtCamera.STATE_SIZE];
+    private boolean mKeyframesValid;
+
+    CourtProjector(CourtCamera camera) {
+        mCamera = camera;
+    }
+
+    CourtCamera getCamera() {
+        return mCamera;
+    }
+
+    /**
+     * @param trajectory nullable.
+     */
+    void setTrajectory(CourtTrajectory trajectory) {
+        if (trajectory != null) {
+            trajectory.seal();
+        }
+
+        mTrajectory = trajectory;
+        mKeyframesValid = false;
+    }
+
+    CourtTrajectory getTrajectory() {
+        return mTrajectory;
+    }
+
+    void setHeight(int height) {
+        if (mHeight != height) {
+            mHeight = height;
+            mKeyframesValid = false;
+        }
+    }
+
+    void setScaleX(float scaleX) {
+        if (mScaleX != scaleX) {
+            mScaleX = scaleX;
+            mKeyframesValid = false;
+        }
+    }
+
+    float getScaleX() {
+        return mScaleX;
+    }
+
+    void setScaleY(float scaleY) {
+        if (mScaleY != scaleY) {
+            mScaleY = scaleY;
+            mKeyframesValid = false;
+        }
+    }
+
+    float getScaleY() {
+        return mScaleY;
+    }
+
+    /**
+     * Matrix of the progress, interpolated from the keyframes in range [0, 1], computed out of the range.
+     *
+     * @param state state of the camera, nullable.
+     */
+    void getMatrix(float progress, float[] values, float[] state) {
+        if (progress >= 0F && progress <= 1F) {
+            if (!mKeyframesValid) {
+                buildKeyframes(values, state != null ? state : new float[CourtCamera.STATE_SIZE]);
+            }
+
+            final float position = progress * KEYFRAME_COUNT;
+            final int index = Math.min((int) position, KEYFRAME_COUNT);
+            final float fraction = position - index;
+
+            interpolateKeyframes(mKeyframeValues, CourtCamera.MATRIX_SIZE, index, fraction, values);
+            if (state != null) {
+                interpolateKeyframes(mKeyframeStates, CourtCamera.STATE_SIZE, index, fraction, state);
+            }
+        } else {
+            computeMatrix(progress, values, state);
+        }
+    }
+
+    private void computeMatrix(float progress, float[] values, float[] state) {
+        if (mTrajectory != null) {
+            mTrajectory.getMatrix(mCamera, progress, mHeight, values, state);
+        } else {
+            mCamera.getMatrix(progress, mHeight, mScaleX, mScaleY, values, state);
+        }
+    }
+
+    private void buildKeyframes(float[] values, float[] state) {
+        for (int index = 0; index <= KEYFRAME_COUNT; index++) {
+            computeMatrix((float) index / KEYFRAME_COUNT, values, state);
+
+            // normalize, so that the keyframes can be interpolated element by element.
+            final float w = values[CourtCamera.MPERSP_2];
+            final int offset = index * CourtCamera.MATRIX_SIZE;
+            for (int i = 0; i < CourtCamera.MATRIX_SIZE; i++) {
+                mKeyframeValues[offset + i] = w != 0F ? values[i] / w : values[i];
+            }
+
+            System.arraycopy(state, 0, mKeyframeStates, index * CourtCamera.STATE_SIZE, CourtCamera.STATE_SIZE);
+        }
+
+        mKeyframesValid = true;
+    }
+
+    private static void interpolateKeyframes(float[] keyframes, int size, int index, float fraction, float[] out) {
+        final int start = index * size;
+        if (fraction <= 0F || index >= KEYFRAME_COUNT) {
+            System.arraycopy(keyframes, start, out, 0, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                final float value = keyframes[start + i];
+                out[i] = value + (keyframes[start + size + i] - value) * fraction;
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Layout
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Maps a location in [srcStart, srcEnd] of its viewport to [dstStart, dstEnd], e.g. the court bounds.
+     */
+    static float mapLocation(float srcLocation, float srcStart, float srcEnd, float dstStart, float dstEnd) {
+        return dstStart + (dstEnd - dstStart) * (srcLocation - srcStart) / (srcEnd - srcStart);
+    }
+
+    /**
+     * Projects points of the court from index, anchors are rounded to pixels relative to the center of the view.
+     */
+    static void mapAnchors(float[] matrix, float[] points, float[] anchors, int index, int count) {
+        CourtCamera.mapPoints(matrix, anchors, index * 2, points, index * 2, count);
+
+        for (int i = index * 2, end = (index + count) * 2; i < end; i++) {
+            anchors[i] = Math.round(anchors[i]);
+        }
+    }
+
+    /**
+     * Projects points of the court in place, and collects the indices of the points in [left, right] x [top, bottom].
+     *
+     * @return count of the visible points, at most maxCount.
+     */
+    static int findVisible(float[] matrix, float[] points, int count,
+                           float left, float top, float right, float bottom, int[] out, int maxCount) {
+        CourtCamera.mapPoints(matrix, points, 0, points, 0, count);
+
+        int visibleCount = 0;
+        for (int index = 0; index < count && visibleCount < maxCount; index++) {
+            final float x = points[index * 2];
+            final float y = points[index * 2 + 1];
+            if (x >= left && x <= right && y >= top && y <= bottom) {
+                out[visibleCount++] = index;
+            }
+        }
+
+        return visibleCount;
+    }
+}
@@ -0,0 +1,180 @@
+package com.xujiaao.android.court;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tracking replay of a game, read through a memory-mapped file.
+ * <p>
+ * The file is made of a header, the time index (game clock in milliseconds of every frame, ascending) and the frames
+ * (x and y of every entity, in range [0, 1] of the court insets). All values are little endian:
+ * <pre>
+ * int magic, int version, int entityCount, int frameCount
+ * int[frameCount] clocks
+ * float[frameCount * entityCount * 2] locations
+ * </pre>
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtReplay implements Closeable {
+
+    private static final int MAGIC = 0x4C505243; // "CRPL"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private final RandomAccessFile mFile;
+
+    private final int mEntityCount;
+    private final int mFrameCount;
+
+    private final IntBuffer mClocks;
+    private final FloatBuffer mLocations;
+
+    private CourtReplay(RandomAccessFile file) throws IOException {
+        mFile = file;
+
+        final FileChannel channel = file.getChannel();
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a court replay.");
+        }
+
+        mEntityCount = buffer.getInt(8);
+        mFrameCount = buffer.getInt(12);
+
+        final long size = HEADER_SIZE + 4L * mFrameCount + 8L * mFrameCount * mEntityCount;
+        if (mEntityCount <= 0 || mFrameCount <= 0 || size > buffer.capacity()) {
+            throw new IOException("Court replay is truncated.");
+        }
+
+        buffer.position(HEADER_SIZE);
+        mClocks = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        buffer.position(HEADER_SIZE + 4 * mFrameCount);
+        mLocations = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    public static CourtReplay open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            return new CourtReplay(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a replay file.
+     *
+     * @param clocks    game clock in milliseconds of every frame, ascending.
+     * @param locations x and y of every entity of every frame.
+     */
+    public static void write(File file, int entityCount, int[] clocks, float[] locations, int frameCount)
+            throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            final long size = HEADER_SIZE + 4L * frameCount + 8L * frameCount * entityCount;
+            raf.setLength(size);
+
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(entityCount);
+            buffer.putInt(frameCount);
+
+            final ByteBuffer body = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            body.asIntBuffer().put(clocks, 0, frameCount);
+
+            body.position(4 * frameCount);
+            body.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(locations, 0, frameCount * entityCount * 2);
+
+            buffer.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    public int getEntityCount() {
+        return mEntityCount;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getStartClock() {
+        return mClocks.get(0);
+    }
+
+    public int getEndClock() {
+        return mClocks.get(mFrameCount - 1);
+    }
+
+    /**
+     * Index of the last frame at or before the given clock, 0 if the clock is before the first frame.
+     */
+    public int findFrame(long clock) {
+        final IntBuffer clocks = mClocks;
+
+        int low = 0;
+        int high = mFrameCount - 1;
+
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+
+            if (clocks.get(mid) <= clock) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Interpolates the locations of all the entities at the given clock, without any allocation.
+     *
+     * @param outLocations x and y of every entity, at least {@link #getEntityCount()} * 2 long.
+     */
+    public void getLocations(long clock, float[] outLocations) {
+        final int frame = findFrame(clock);
+        final int next = Math.min(frame + 1, mFrameCount - 1);
+
+        final int start = mClocks.get(frame);
+        final int end = mClocks.get(next);
+
+        float f = end > start ? (float) (clock - start) / (end - start) : 0F;
+        f = Math.max(0F, Math.min(f, 1F));
+
+        final FloatBuffer locations = mLocations;
+        final int length = mEntityCount * 2;
+        final int s = frame * length;
+        final int e = next * length;
+
+        for (int index = 0; index < length; index++) {
+            final float from = locations.get(s + index);
+            outLocations[index] = from + (locations.get(e + index) - from) * f;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
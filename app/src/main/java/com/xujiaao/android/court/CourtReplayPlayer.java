@@ -0,0 +1,148 @@
+package com.xujiaao.android.court;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Plays a {@link CourtReplay} on the markers of a {@link CourtView}, entity of the replay is the position of the
+ * adapter, or the index of the marker layer. Playing is paused while the view is detached, and resumed when it is
+ * attached again.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtReplayPlayer {
+
+    private final CourtView mCourtView;
+    private final CourtReplay mReplay;
+
+    private final float[] mLocations;
+
+    private long mClock;
+
+    // the clock is measured from the start of playing, so that fractions of the speed are never lost.
+    private long mStartClock;
+    private long mStartTime;
+    private float mSpeed = 1F;
+    private boolean mPlaying;
+    private boolean mResumeOnAttach;
+
+    private final Runnable mFrameRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            onFrame();
+        }
+    };
+
+    private final View.OnAttachStateChangeListener mAttachStateListener = new View.OnAttachStateChangeListener() {
+
+        @Override
+        public void onViewAttachedToWindow(View view) {
+            if (mResumeOnAttach) {
+                mResumeOnAttach = false;
+                play();
+            }
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View view) {
+            if (mPlaying) {
+                pause();
+                mResumeOnAttach = true;
+            }
+        }
+    };
+
+    public CourtReplayPlayer(CourtView courtView, CourtReplay replay) {
+        mCourtView = courtView;
+        mReplay = replay;
+        mLocations = new float[replay.getEntityCount() * 2];
+        mClock = replay.getStartClock();
+
+        courtView.addOnAttachStateChangeListener(mAttachStateListener);
+    }
+
+    /**
+     * Pauses playing, and stops following the attach state of the view, e.g. when the view is kept but the player
+     * is dropped.
+     */
+    public void release() {
+        pause();
+        mResumeOnAttach = false;
+
+        mCourtView.removeOnAttachStateChangeListener(mAttachStateListener);
+    }
+
+    public long getClock() {
+        return mClock;
+    }
+
+    public void setSpeed(float speed) {
+        mSpeed = speed;
+
+        restartClock();
+    }
+
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    /**
+     * Moves the markers to the given game clock, a binary search of the time index and one interpolation.
+     */
+    public void seekTo(long clock) {
+        moveTo(clock);
+        restartClock();
+    }
+
+    private void moveTo(long clock) {
+        mClock = Math.max(mReplay.getStartClock(), Math.min(clock, mReplay.getEndClock()));
+
+        mReplay.getLocations(mClock, mLocations);
+        mCourtView.setMarkerLocations(mLocations, mReplay.getEntityCount());
+    }
+
+    private void restartClock() {
+        mStartClock = mClock;
+        mStartTime = SystemClock.uptimeMillis();
+    }
+
+    public void play() {
+        if (!ViewCompat.isAttachedToWindow(mCourtView)) {
+            mResumeOnAttach = true;
+            return;
+        }
+
+        if (!mPlaying) {
+            mPlaying = true;
+
+            seekTo(mClock);
+            ViewCompat.postOnAnimation(mCourtView, mFrameRunnable);
+        }
+    }
+
+    public void pause() {
+        mResumeOnAttach = false;
+
+        if (mPlaying) {
+            mPlaying = false;
+
+            mCourtView.removeCallbacks(mFrameRunnable);
+        }
+    }
+
+    private void onFrame() {
+        if (!mPlaying) {
+            return;
+        }
+
+        final long elapsed = SystemClock.uptimeMillis() - mStartTime;
+        moveTo(mStartClock + Math.round(elapsed * (double) mSpeed));
+
+        if (mClock < mReplay.getEndClock()) {
+            ViewCompat.postOnAnimation(mCourtView, mFrameRunnable);
+        } else {
+            mPlaying = false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.xujiaao.android.court;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of points of the court (in range [0, 1]), points are kept in linked lists of their cells, so moving a
+ * point is O(1) and finding the nearest point only visits the cells around it.
+ */
+final class CourtSpatialIndex {
+
+    private static final int GRID_SIZE = 32;
+
+    private static final int NONE = -1;
+
+    private final int[] mCellHeads = new int[GRID_SIZE * GRID_SIZE];
+
+    private int[] mCells = new int[0];
+    private int[] mNext = new int[0];
+    private int[] mPrev = new int[0];
+    private float[] mXs = new float[0];
+    private float[] mYs = new float[0];
+
+    private int mCapacity;
+
+    CourtSpatialIndex() {
+        Arrays.fill(mCellHeads, NONE);
+    }
+
+    /**
+     * Removes all the points, ids of the points MUST be less than the given capacity.
+     */
+    void reset(int capacity) {
+        if (mCells.length < capacity) {
+            mCells = new int[capacity];
+            mNext = new int[capacity];
+            mPrev = new int[capacity];
+            mXs = new float[capacity];
+            mYs = new float[capacity];
+        }
+
+        mCapacity = capacity;
+
+        Arrays.fill(mCellHeads, NONE);
+        Arrays.fill(mCells, 0, capacity, NONE);
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    void set(int id, float x, float y) {
+        if (id < 0 || id >= mCapacity) {
+            return;
+        }
+
+        mXs[id] = x;
+        mYs[id] = y;
+
+        final int cell = getCell(x, y);
+        if (mCells[id] != cell) {
+            unlink(id);
+
+            final int head = mCellHeads[cell];
+            mNext[id] = head;
+            mPrev[id] = NONE;
+            if (head != NONE) {
+                mPrev[head] = id;
+            }
+
+            mCellHeads[cell] = id;
+            mCells[id] = cell;
+        }
+    }
+
+    void remove(int id) {
+        if (id >= 0 && id < mCapacity) {
+            unlink(id);
+        }
+    }
+
+    private void unlink(int id) {
+        final int cell = mCells[id];
+        if (cell == NONE) {
+            return;
+        }
+
+        final int next = mNext[id];
+        final int prev = mPrev[id];
+
+        if (prev != NONE) {
+            mNext[prev] = next;
+        } else {
+            mCellHeads[cell] = next;
+        }
+
+        if (next != NONE) {
+            mPrev[next] = prev;
+        }
+
+        mCells[id] = NONE;
+    }
+
+    /**
+     * Finds the point nearest to (x, y) inside the ellipse of the given radii.
+     *
+     * @return id of the point, or -1 if there is none.
+     */
+    int findNearest(float x, float y, float radiusX, float radiusY) {
+        if (radiusX <= 0F || radiusY <= 0F) {
+            return NONE;
+        }
+
+        final int startCol = getIndex(x - radiusX);
+        final int endCol = getIndex(x + radiusX);
+        final int startRow = getIndex(y - radiusY);
+        final int endRow = getIndex(y + radiusY);
+
+        int nearest = NONE;
+        float nearestDistance = 1F;
+
+        for (int row = startRow; row <= endRow; row++) {
+            for (int col = startCol; col <= endCol; col++) {
+                for (int id = mCellHeads[row * GRID_SIZE + col]; id != NONE; id = mNext[id]) {
+                    final float dx = (mXs[id] - x) / radiusX;
+                    final float dy = (mYs[id] - y) / radiusY;
+                    final float distance = dx * dx + dy * dy;
+
+                    if (distance <= nearestDistance) {
+                        nearest = id;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    private static int getCell(float x, float y) {
+        return getIndex(y) * GRID_SIZE + getIndex(x);
+    }
+
+    private static int getIndex(float value) {
+        // points out of the court are kept in the cells of the edges.
+        return Math.max(0, Math.min((int) (value * GRID_SIZE), GRID_SIZE - 1));
+    }
+}
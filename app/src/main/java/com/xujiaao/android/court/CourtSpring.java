@@ -0,0 +1,99 @@
+package com.xujiaao.android.court;
+
+/**
+ * Damped spring moving a value to its target, stepped by the frames of an animation driver.
+ */
+final class CourtSpring {
+
+    private static final float DEFAULT_STIFFNESS = 200F;
+    private static final float DEFAULT_DAMPING_RATIO = .9F;
+
+    // fixed step keeps the integration stable on slow frames.
+    private static final float MAX_STEP = 1F / 240F;
+    private static final float MAX_FRAME_TIME = 1F / 15F;
+
+    private static final float VALUE_THRESHOLD = .001F;
+    private static final float VELOCITY_THRESHOLD = .01F;
+
+    private float mStiffness = DEFAULT_STIFFNESS;
+    private float mDamping = 2F * DEFAULT_DAMPING_RATIO * (float) Math.sqrt(DEFAULT_STIFFNESS);
+
+    private float mValue;
+    private float mVelocity;
+    private float mTarget;
+    private float mMin = Float.NEGATIVE_INFINITY;
+    private float mMax = Float.POSITIVE_INFINITY;
+
+    private boolean mRunning;
+
+    void setStiffness(float stiffness, float dampingRatio) {
+        mStiffness = stiffness;
+        mDamping = 2F * dampingRatio * (float) Math.sqrt(stiffness);
+    }
+
+    void setRange(float min, float max) {
+        mMin = min;
+        mMax = max;
+    }
+
+    void start(float value, float velocity, float target) {
+        mValue = value;
+        mVelocity = velocity;
+        mTarget = target;
+        mRunning = true;
+    }
+
+    void stop() {
+        mRunning = false;
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    float getValue() {
+        return mValue;
+    }
+
+    float getVelocity() {
+        return mVelocity;
+    }
+
+    float getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * Advances the spring by the given seconds.
+     *
+     * @return false if the spring is at rest.
+     */
+    boolean step(float seconds) {
+        if (!mRunning) {
+            return false;
+        }
+
+        float remaining = Math.min(seconds, MAX_FRAME_TIME);
+        while (remaining > 0F) {
+            final float dt = Math.min(remaining, MAX_STEP);
+            remaining -= dt;
+
+            // semi-implicit euler.
+            mVelocity += (-mStiffness * (mValue - mTarget) - mDamping * mVelocity) * dt;
+            mValue += mVelocity * dt;
+
+            if (mValue < mMin || mValue > mMax) {
+                mValue = Math.max(mMin, Math.min(mValue, mMax));
+                mVelocity = 0F;
+            }
+        }
+
+        if (Math.abs(mValue - mTarget) < VALUE_THRESHOLD && Math.abs(mVelocity) < VELOCITY_THRESHOLD) {
+            mValue = mTarget;
+            mVelocity = 0F;
+            mRunning = false;
+        }
+
+        return mRunning;
+    }
+}
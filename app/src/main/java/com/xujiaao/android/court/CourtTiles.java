@@ -0,0 +1,315 @@
+package com.xujiaao.android.court;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * Tiles of the court floor decoded on demand from a {@link BitmapRegionDecoder}, kept in a bounded cache. Tiles are
+ * keyed by primitive longs, drawing them boxes nothing.
+ * <p>
+ * Tiles are decoded in {@link Bitmap.Config#ARGB_8888} until a tile of the source turns out to be opaque, then in
+ * {@link Bitmap.Config#RGB_565}.
+ */
+final class CourtTiles {
+
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_TILE_COUNT = 64;
+    private static final int MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+    interface Callback {
+
+        void onTileLoaded();
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Callback mCallback;
+    private final TileCache mCache;
+    private final LongSparseArray<TileJob> mPendingTiles = new LongSparseArray<>();
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mTmpSrcRect = new Rect();
+    private final RectF mTmpDstRect = new RectF();
+
+    private BitmapRegionDecoder mDecoder;
+    private int mSourceWidth;
+    private int mSourceHeight;
+
+    private volatile int mGeneration;
+    private volatile boolean mSourceOpaque;
+
+    CourtTiles(Callback callback) {
+        mCallback = callback;
+        mCache = new TileCache((int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_CACHE_SIZE));
+    }
+
+    void setDecoder(@Nullable BitmapRegionDecoder decoder) {
+        if (mDecoder == decoder) {
+            return;
+        }
+
+        clear();
+
+        final BitmapRegionDecoder old = mDecoder;
+        if (old != null) {
+            // jobs of the old decoder may be still running.
+            CourtExecutors.getBackgroundExecutor().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    synchronized (old) {
+                        old.recycle();
+                    }
+                }
+            });
+        }
+
+        mDecoder = decoder;
+        mSourceOpaque = false;
+        mSourceWidth = decoder != null ? decoder.getWidth() : 0;
+        mSourceHeight = decoder != null ? decoder.getHeight() : 0;
+    }
+
+    boolean hasDecoder() {
+        return mDecoder != null;
+    }
+
+    int getSourceWidth() {
+        return mSourceWidth;
+    }
+
+    int getSourceHeight() {
+        return mSourceHeight;
+    }
+
+    void clear() {
+        mGeneration++;
+        mPendingTiles.clear();
+        mCache.evictAll();
+    }
+
+    /**
+     * Draws the tiles of the region (in pixels of the source) into the given bounds.
+     *
+     * @param scale pixels of the screen per pixel of the source.
+     */
+    void draw(Canvas canvas, Rect bounds, RectF region, float scale) {
+        if (mDecoder == null || region.isEmpty()) {
+            return;
+        }
+
+        int sample = 1;
+        while (sample * 2 * scale <= 1F) {
+            sample *= 2;
+        }
+
+        final int span = TILE_SIZE * sample;
+        final int maxCol = (mSourceWidth - 1) / span;
+        final int maxRow = (mSourceHeight - 1) / span;
+
+        final int startCol = Math.max(0, (int) (region.left / span));
+        final int startRow = Math.max(0, (int) (region.top / span));
+        final int endCol = Math.min(maxCol, (int) (region.right / span));
+        final int endRow = Math.min(maxRow, (int) (region.bottom / span));
+
+        if ((endCol - startCol + 1) * (endRow - startRow + 1) > MAX_TILE_COUNT) {
+            return;
+        }
+
+        final float sx = (float) bounds.width() / mSourceWidth;
+        final float sy = (float) bounds.height() / mSourceHeight;
+
+        final Rect src = mTmpSrcRect;
+        final RectF dst = mTmpDstRect;
+
+        for (int row = startRow; row <= endRow; row++) {
+            for (int col = startCol; col <= endCol; col++) {
+                src.left = col * span;
+                src.top = row * span;
+                src.right = Math.min(src.left + span, mSourceWidth);
+                src.bottom = Math.min(src.top + span, mSourceHeight);
+
+                final long key = getTileKey(sample, col, row);
+                final Bitmap tile = mCache.get(key);
+                if (tile != null) {
+                    dst.left = bounds.left + src.left * sx;
+                    dst.top = bounds.top + src.top * sy;
+                    dst.right = bounds.left + src.right * sx;
+                    dst.bottom = bounds.top + src.bottom * sy;
+
+                    canvas.drawBitmap(tile, null, dst, mPaint);
+                } else {
+                    requestTile(key, sample, src);
+                }
+            }
+        }
+    }
+
+    private static long getTileKey(int sample, int col, int row) {
+        return ((long) Integer.numberOfTrailingZeros(sample) << 48) | ((long) row << 24) | col;
+    }
+
+    private void requestTile(long key, int sample, Rect region) {
+        if (mPendingTiles.get(key) == null) {
+            final TileJob job = new TileJob(mDecoder, mGeneration, key, sample, new Rect(region));
+            mPendingTiles.put(key, job);
+
+            CourtExecutors.getBackgroundExecutor().execute(job);
+        }
+    }
+
+    private void onTileDecoded(int generation, long key, @Nullable Bitmap tile) {
+        if (generation == mGeneration) {
+            mPendingTiles.remove(key);
+
+            if (tile != null) {
+                mCache.put(key, tile);
+                mCallback.onTileLoaded();
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Tools
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private class TileJob implements Runnable {
+
+        private final BitmapRegionDecoder mDecoder;
+        private final int mGeneration;
+        private final long mKey;
+        private final int mSample;
+        private final Rect mRegion;
+
+        TileJob(BitmapRegionDecoder decoder, int generation, long key, int sample, Rect region) {
+            mDecoder = decoder;
+            mGeneration = generation;
+            mKey = key;
+            mSample = sample;
+            mRegion = region;
+        }
+
+        @Override
+        public void run() {
+            Bitmap tile = null;
+
+            if (mGeneration == CourtTiles.this.mGeneration) {
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = mSample;
+                options.inPreferredConfig = mSourceOpaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+                synchronized (mDecoder) {
+                    if (!mDecoder.isRecycled()) {
+                        tile = mDecoder.decodeRegion(mRegion, options);
+                    }
+                }
+
+                // alpha of the tiles comes from the format of the source, opaque tiles take half the memory.
+                if (tile != null && !tile.hasAlpha() && mGeneration == CourtTiles.this.mGeneration) {
+                    mSourceOpaque = true;
+                }
+            }
+
+            final Bitmap result = tile;
+            mHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    onTileDecoded(mGeneration, mKey, result);
+                }
+            });
+        }
+    }
+
+    /**
+     * LRU cache of the tiles bounded by bytes, entries are linked from the most recently used one.
+     */
+    private static class TileCache {
+
+        private final int mMaxSize;
+        private int mSize;
+
+        private final LongSparseArray<Entry> mEntries = new LongSparseArray<>();
+        private final Entry mHead = new Entry(0L, null);
+
+        TileCache(int maxSize) {
+            mMaxSize = maxSize;
+            mHead.mPrev = mHead;
+            mHead.mNext = mHead;
+        }
+
+        @Nullable
+        Bitmap get(long key) {
+            final Entry entry = mEntries.get(key);
+            if (entry == null) {
+                return null;
+            }
+
+            unlink(entry);
+            linkFirst(entry);
+            return entry.mBitmap;
+        }
+
+        void put(long key, Bitmap bitmap) {
+            final Entry old = mEntries.get(key);
+            if (old != null) {
+                unlink(old);
+                mSize -= old.mBitmap.getByteCount();
+            }
+
+            final Entry entry = new Entry(key, bitmap);
+            mEntries.put(key, entry);
+            linkFirst(entry);
+            mSize += bitmap.getByteCount();
+
+            while (mSize > mMaxSize && mHead.mPrev != entry) {
+                final Entry eldest = mHead.mPrev;
+                unlink(eldest);
+                mEntries.remove(eldest.mKey);
+                mSize -= eldest.mBitmap.getByteCount();
+            }
+        }
+
+        void evictAll() {
+            mEntries.clear();
+            mHead.mPrev = mHead;
+            mHead.mNext = mHead;
+            mSize = 0;
+        }
+
+        private void linkFirst(Entry entry) {
+            entry.mPrev = mHead;
+            entry.mNext = mHead.mNext;
+            mHead.mNext.mPrev = entry;
+            mHead.mNext = entry;
+        }
+
+        private static void unlink(Entry entry) {
+            entry.mPrev.mNext = entry.mNext;
+            entry.mNext.mPrev = entry.mPrev;
+        }
+
+        private static class Entry {
+
+            final long mKey;
+            final Bitmap mBitmap;
+
+            Entry mPrev;
+            Entry mNext;
+
+            Entry(long key, Bitmap bitmap) {
+                mKey = key;
+                mBitmap = bitmap;
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.xujiaao.android.court;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream of tracking samples of a fixed number of entities (players and the ball). Samples are pushed by a single
+ * producer thread into a lock-free ring buffer, drained and interpolated by the main thread.
+ * <p>
+ * Locations are in range [0, 1] of the court insets, times are in {@link SystemClock#uptimeMillis()} base.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtTrackingStream {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long DEFAULT_INTERPOLATION_DELAY = 80L;
+
+    private static final int HISTORY_SIZE = 4;
+
+    private final int mEntityCount;
+
+    // ring buffer, written by the producer, read by the consumer.
+    private final int mMask;
+    private final int[] mEntities;
+    private final long[] mTimes;
+    private final float[] mXs;
+    private final float[] mYs;
+
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    // history of every entity, main thread only.
+    private final long[] mHistoryTimes;
+    private final float[] mHistoryXs;
+    private final float[] mHistoryYs;
+    private final int[] mHistoryCounts;
+    private final int[] mHistoryEnds;
+
+    private long mLatestTime = Long.MIN_VALUE;
+    private long mInterpolationDelay = DEFAULT_INTERPOLATION_DELAY;
+
+    public CourtTrackingStream(int entityCount) {
+        this(entityCount, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity max count of samples not drained yet, rounded up to a power of 2.
+     */
+    public CourtTrackingStream(int entityCount, int capacity) throws IllegalArgumentException {
+        if (entityCount <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Entity count and capacity MUST > 0.");
+        }
+
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+
+        mEntityCount = entityCount;
+
+        mMask = size - 1;
+        mEntities = new int[size];
+        mTimes = new long[size];
+        mXs = new float[size];
+        mYs = new float[size];
+
+        mHistoryTimes = new long[entityCount * HISTORY_SIZE];
+        mHistoryXs = new float[entityCount * HISTORY_SIZE];
+        mHistoryYs = new float[entityCount * HISTORY_SIZE];
+        mHistoryCounts = new int[entityCount];
+        mHistoryEnds = new int[entityCount];
+    }
+
+    public int getEntityCount() {
+        return mEntityCount;
+    }
+
+    /**
+     * Sets how far the rendering is behind the latest samples, should be about twice the interval of the source, so
+     * that there is always a sample after the rendering time to interpolate to.
+     */
+    public void setInterpolationDelay(long delay) {
+        mInterpolationDelay = Math.max(0L, delay);
+    }
+
+    public long getInterpolationDelay() {
+        return mInterpolationDelay;
+    }
+
+    /**
+     * Count of samples dropped because the ring buffer was full.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public boolean push(int entity, float x, float y) {
+        return push(entity, SystemClock.uptimeMillis(), x, y);
+    }
+
+    /**
+     * Pushes a sample, MUST be called from a single producer thread. Never blocks, the sample is dropped if the ring
+     * buffer is full.
+     *
+     * @return false if the sample is dropped.
+     */
+    public boolean push(int entity, long time, float x, float y) {
+        if (entity < 0 || entity >= mEntityCount) {
+            return false;
+        }
+
+        final long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+
+        final int index = (int) tail & mMask;
+        mEntities[index] = entity;
+        mTimes[index] = time;
+        mXs[index] = x;
+        mYs[index] = y;
+
+        // publishes the sample.
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Moves the pending samples into the history of the entities, main thread only.
+     *
+     * @return true if any sample is drained.
+     */
+    boolean drain() {
+        final long head = mHead.get();
+        final long tail = mTail.get();
+        if (head == tail) {
+            return false;
+        }
+
+        for (long sequence = head; sequence < tail; sequence++) {
+            final int index = (int) sequence & mMask;
+            addHistory(mEntities[index], mTimes[index], mXs[index], mYs[index]);
+        }
+
+        // releases the slots to the producer.
+        mHead.lazySet(tail);
+        return true;
+    }
+
+    private void addHistory(int entity, long time, float x, float y) {
+        final int base = entity * HISTORY_SIZE;
+        final int count = mHistoryCounts[entity];
+
+        // samples out of order are dropped.
+        if (count > 0 && time <= mHistoryTimes[base + (mHistoryEnds[entity] + HISTORY_SIZE - 1) % HISTORY_SIZE]) {
+            return;
+        }
+
+        final int end = mHistoryEnds[entity];
+        mHistoryTimes[base + end] = time;
+        mHistoryXs[base + end] = x;
+        mHistoryYs[base + end] = y;
+
+        mHistoryEnds[entity] = (end + 1) % HISTORY_SIZE;
+        mHistoryCounts[entity] = Math.min(count + 1, HISTORY_SIZE);
+
+        mLatestTime = Math.max(mLatestTime, time);
+    }
+
+    /**
+     * Time of the latest drained sample, {@link Long#MIN_VALUE} if there is none.
+     */
+    long getLatestTime() {
+        return mLatestTime;
+    }
+
+    /**
+     * Interpolates the location of the entity at the given time, main thread only. The location is held at the first
+     * or the last sample out of the history.
+     *
+     * @return false if there is no sample of the entity.
+     * @throws IndexOutOfBoundsException if the entity is not in range [0, entity count).
+     */
+    public boolean getLocation(int entity, long time, float[] outLocation) throws IndexOutOfBoundsException {
+        if (entity < 0 || entity >= mEntityCount) {
+            throw new IndexOutOfBoundsException("Invalid entity " + entity + " of " + mEntityCount);
+        }
+
+        final int count = mHistoryCounts[entity];
+        if (count == 0) {
+            return false;
+        }
+
+        final int base = entity * HISTORY_SIZE;
+        final int start = (mHistoryEnds[entity] + HISTORY_SIZE - count) % HISTORY_SIZE;
+
+        int prev = base + start;
+        for (int i = 1; i < count; i++) {
+            final int next = base + (start + i) % HISTORY_SIZE;
+            if (mHistoryTimes[next] > time) {
+                if (mHistoryTimes[prev] < time) {
+                    final float f = (float) (time - mHistoryTimes[prev]) / (mHistoryTimes[next] - mHistoryTimes[prev]);
+                    outLocation[0] = mHistoryXs[prev] + (mHistoryXs[next] - mHistoryXs[prev]) * f;
+                    outLocation[1] = mHistoryYs[prev] + (mHistoryYs[next] - mHistoryYs[prev]) * f;
+                    return true;
+                }
+
+                break;
+            }
+
+            prev = next;
+        }
+
+        outLocation[0] = mHistoryXs[prev];
+        outLocation[1] = mHistoryYs[prev];
+        return true;
+    }
+}
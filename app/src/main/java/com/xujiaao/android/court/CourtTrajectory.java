@@ -0,0 +1,134 @@
+package com.xujiaao.android.court;
+
+/**
+ * Camera trajectory of a {@link CourtView}, from the collapsed court (progress 0) to the expanded court (progress 1).
+ * Every keyframe describes the camera at a progress: tilt of the court in degrees, distance of the court in pixels
+ * (moved away from the camera, 0 for the default camera distance), Y offset of the court in pixels and zoom.
+ * Parameters are interpolated linearly between keyframes.
+ * <p>
+ * Keyframes are kept in primitive arrays and baked by the {@link CourtView} when the trajectory is set, a trajectory
+ * set to a view or a renderer can not be changed any more.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtTrajectory {
+
+    private int mCount;
+    private boolean mSealed;
+
+    private float[] mProgresses = new float[4];
+    private float[] mTilts = new float[4];
+    private float[] mDistances = new float[4];
+    private float[] mOffsets = new float[4];
+    private float[] mZooms = new float[4];
+
+    /**
+     * Adds a keyframe, keyframes MUST be added in ascending order of the progress.
+     *
+     * @param distance distance the court is moved away from the camera, 0 for the default camera distance.
+     * @throws IllegalStateException if the trajectory is already set to a view or a renderer.
+     */
+    public CourtTrajectory addKeyframe(float progress, float tilt, float distance, float offsetY, float zoom)
+            throws IllegalArgumentException, IllegalStateException {
+        if (mSealed) {
+            throw new IllegalStateException("Keyframes MUST be added before the trajectory is set.");
+        }
+
+        if (mCount > 0 && progress <= mProgresses[mCount - 1]) {
+            throw new IllegalArgumentException("Keyframes MUST be added in ascending order of the progress.");
+        }
+
+        if (mCount == mProgresses.length) {
+            mProgresses = grow(mProgresses);
+            mTilts = grow(mTilts);
+            mDistances = grow(mDistances);
+            mOffsets = grow(mOffsets);
+            mZooms = grow(mZooms);
+        }
+
+        mProgresses[mCount] = progress;
+        mTilts[mCount] = tilt;
+        mDistances[mCount] = distance;
+        mOffsets[mCount] = offsetY;
+        mZooms[mCount] = zoom;
+        mCount++;
+
+        return this;
+    }
+
+    public int getKeyframeCount() {
+        return mCount;
+    }
+
+    /**
+     * Called when the trajectory is set to a view or a renderer, so that the baked keyframes are never stale.
+     */
+    void seal() {
+        mSealed = true;
+    }
+
+    private static float[] grow(float[] array) {
+        final float[] result = new float[array.length * 2];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Computes the matrix of the given progress, parameters are held out of the keyframes.
+     *
+     * @param height height of the court, only for the state.
+     * @param state  state of the camera, nullable.
+     */
+    void getMatrix(CourtCamera camera, float progress, int height, float[] matrix, float[] state) {
+        final int count = mCount;
+        if (count == 0) {
+            camera.getCameraMatrix(0F, 0F, matrix);
+            return;
+        }
+
+        int end = 0;
+        while (end < count && mProgresses[end] < progress) {
+            end++;
+        }
+
+        final int start = Math.max(end - 1, 0);
+        end = Math.min(end, count - 1);
+
+        final float f = end != start ? (progress - mProgresses[start]) / (mProgresses[end] - mProgresses[start]) : 0F;
+
+        final float tilt = lerp(mTilts, start, end, f);
+        final float distance = lerp(mDistances, start, end, f);
+        final float offset = lerp(mOffsets, start, end, f);
+        final float zoom = lerp(mZooms, start, end, f);
+
+        camera.getCameraMatrix(distance, tilt, matrix);
+
+        // matrix.postScale(zoom, zoom);
+        for (int i = CourtCamera.MSCALE_X; i <= CourtCamera.MTRANS_Y; i++) {
+            matrix[i] *= zoom;
+        }
+
+        // matrix.postTranslate(0F, offset);
+        matrix[CourtCamera.MSKEW_Y] += matrix[CourtCamera.MPERSP_0] * offset;
+        matrix[CourtCamera.MSCALE_Y] += matrix[CourtCamera.MPERSP_1] * offset;
+        matrix[CourtCamera.MTRANS_Y] += matrix[CourtCamera.MPERSP_2] * offset;
+
+        if (state != null) {
+            // rotated around its center.
+            final float h = .5F * height;
+            final double radians = tilt * Math.PI / 180D;
+            final float s = (float) Math.sin(radians);
+            final float c = (float) Math.cos(radians);
+
+            state[CourtCamera.STATE_CAMERA_Y] = -offset;
+            state[CourtCamera.STATE_CAMERA_Z] = -camera.getCameraDistance();
+            state[CourtCamera.STATE_COURT_START_Y] = h * c;
+            state[CourtCamera.STATE_COURT_START_Z] = distance + h * s;
+            state[CourtCamera.STATE_COURT_END_Y] = -h * c;
+            state[CourtCamera.STATE_COURT_END_Z] = distance - h * s;
+        }
+    }
+
+    private static float lerp(float[] values, int start, int end, float fraction) {
+        return values[start] + (values[end] - values[start]) * fraction;
+    }
+}
@@ -1,42 +1,133 @@
 package com.xujiaao.android.court;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Camera;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.graphics.drawable.DrawableCompat;
+import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.Display;
+import android.view.GestureDetector;
 import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
-import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.ViewParent;
 import android.widget.Adapter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+
 public class CourtView extends ViewGroup {
 
+    private static final String TAG = "CourtView";
+
     private static final long ANIMATION_DURATION = 1500L;
 
     private static final float DEFAULT_DST_SCALE_X = .7F;
     private static final float DEFAULT_DST_SCALE_Y = .5F;
 
+    private static final float DEFAULT_MAX_ZOOM = 4F;
+
+    private static final int DEFAULT_MAX_CHILD_COUNT = 256;
+
+    private static final long TRACKING_IDLE_INTERVAL = 100L;
+
+    private static final float TOUCH_RADIUS_DP = 24F;
+
+    private static final float CLUSTER_SIZE_DP = 48F;
+    private static final float CLUSTER_BADGE_RADIUS_DP = 10F;
+
+    private static final int PLACEHOLDER_COLOR = 0x1F808080;
+
+    // seconds of a fling projected to decide the settled state.
+    private static final float SCRUB_FLING_PROJECTION = .15F;
+
     private final Rect mCourtBounds = new Rect();
 
+    private final Matrix mTmpInverseMatrix = new Matrix();
+
+    // matrix of the expanded court, used to lay out the children.
+    private final Matrix mLayoutMatrix = new Matrix();
+    private final float[] mLayoutValues = new float[CourtCamera.MATRIX_SIZE];
+    private final RectF mTmpRect = new RectF();
+    private final float[] mTmpPoints = new float[12];
+
     private final CameraHelper mCameraHelper = new CameraHelper();
+    private final CourtMipmaps mCourtMipmaps = new CourtMipmaps();
+    private final CourtMarkerLayer mMarkerLayer = new CourtMarkerLayer();
+    private final CourtSpatialIndex mMarkerIndex = new CourtSpatialIndex();
+    private final float[] mTmpTouchPoints = new float[6];
+    private final Paint mHeatmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private CourtHeatmap mHeatmap;
+    private final CourtHeatmap.Callback mHeatmapCallback = new CourtHeatmap.Callback() {
+
+        @Override
+        public void onHeatmapUpdated(CourtHeatmap heatmap) {
+            invalidate();
+        }
+    };
+
+    private float[] mChildPoints = new float[0];
+    private float[] mChildAnchors = new float[0];
+    private float[] mChildFramePoints = new float[0];
+    private int mChildPointCount;
+
+    private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<>();
+    private final LongSparseArray<View> mStableViews = new LongSparseArray<>();
+    private final LayoutParams mTmpLocation = new LayoutParams();
+
+    private CourtDataset mMarkerDataset;
+    private MarkerDatasetObserver mMarkerDatasetObserver;
+
+    private int[] mPopulatePositions = new int[0];
+    private float[] mPopulatePoints = new float[0];
+
+    private int mMaxChildCount = DEFAULT_MAX_CHILD_COUNT;
+    private int mMaxChildExtent;
+    private int mChildWidthMeasureSpec;
+    private int mChildHeightMeasureSpec;
+    private boolean mDataChanged;
+    private boolean mMarkerIndexInvalid = true;
+    private boolean mBlockLayoutRequests;
+
+    // bounds of the court are configured for the content size until the court, its scale or insets are changed.
+    private boolean mCourtBoundsValid;
+    private boolean mLayoutMatrixValid;
+    private int mCourtBoundsWidth;
+    private int mCourtBoundsHeight;
+    private float mTouchRadius;
+    private float mClusterSize;
 
     private boolean mExpanded;
     private boolean mFirstLayout;
+    private boolean mCourtLodEnabled;
+    private boolean mCourtZoomEnabled;
+    private boolean mCourtScrubEnabled;
 
     private int mCourtDrawableWidth;
     private int mCourtDrawableHeight;
@@ -47,13 +138,72 @@ public class CourtView extends ViewGroup {
 
     private float mCurrentProgress;
 
+    private float mCourtZoom = 1F;
+    private float mCourtMaxZoom = DEFAULT_MAX_ZOOM;
+    private float mCourtPanX;
+    private float mCourtPanY;
+
+    private ScaleGestureDetector mScaleGestureDetector;
+    private GestureDetector mGestureDetector;
+
+    // children are moved by pan and zoom gestures, and laid out again once the gesture ends.
+    private boolean mCourtGestureRunning;
+    private boolean mCourtGestureLayoutPending;
+
+    private int mTouchSlop;
+    private VelocityTracker mVelocityTracker;
+    private boolean mScrubbing;
+    private float mScrubDownX;
+    private float mScrubDownY;
+    private long mScrubDownTime = -1L;
+    private float mScrubStartProgress;
+
+    // the court is animated either by a tween (setExpanded) or by a spring (scrubbing), with one driver.
+    private final CourtSpring mCourtSpring = new CourtSpring();
+    private boolean mCourtTweenRunning;
+    private float mCourtTweenStart;
+    private float mCourtTweenEnd;
+    private long mCourtTweenStartTime;
+    private long mCourtTweenDuration;
+    private long mCourtFrameTime;
+    private final Runnable mCourtAnimationRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            onCourtAnimationFrame();
+        }
+    };
+
+    private CourtTiles mCourtTiles;
+    private int mCourtTileSourceRequest;
+    private int mCourtTileSourceResource;
+
     private Drawable mCourtDrawable;
-    private Animator mCourtAnimator;
+    private int mCourtResource;
+    private boolean mCourtAsync;
+    private int mCourtAsyncResource;
+    private int mCourtAsyncRequest;
+    private int mCourtAsyncWidth;
+    private int mCourtAsyncHeight;
+    private Bitmap.Config mCourtBitmapConfig = Bitmap.Config.ARGB_8888;
+
+    private CourtMetrics mMetrics;
+
+    private CourtTrackingStream mTrackingStream;
+    private final float[] mTrackingLocation = new float[2];
+    private final Runnable mTrackingRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            onTrackingFrame();
+        }
+    };
 
     private Adapter mAdapter;
     private DataSetObserver mDataSetObserver;
 
     private OnCourtStateChangedListener mOnCourtStateChangedListener;
+    private OnMarkerClickListener mOnMarkerClickListener;
 
     public CourtView(Context context) {
         super(context);
@@ -71,10 +221,33 @@ public class CourtView extends ViewGroup {
         setWillNotDraw(false);
         setClipToPadding(false);
 
+        final float density = getResources().getDisplayMetrics().density;
+        mTouchRadius = TOUCH_RADIUS_DP * density;
+        mMarkerLayer.setBadgeRadius(CLUSTER_BADGE_RADIUS_DP * density);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mCourtSpring.setRange(0F, 1F);
+
         final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CourtView, 0, 0);
-        setCourt(a.getDrawable(R.styleable.CourtView_court));
+        setCourtBitmapConfig(getBitmapConfig(a.getInt(R.styleable.CourtView_courtBitmapConfig, 0)));
+
+        final int court = a.getResourceId(R.styleable.CourtView_court, 0);
+        if (court != 0 && a.getBoolean(R.styleable.CourtView_courtAsync, false)) {
+            setCourtAsync(court);
+        } else if (court != 0) {
+            setCourt(court);
+        } else {
+            setCourt(a.getDrawable(R.styleable.CourtView_court));
+        }
+
         setCourtScaleX(a.getFloat(R.styleable.CourtView_courtScaleX, DEFAULT_DST_SCALE_X));
         setCourtScaleY(a.getFloat(R.styleable.CourtView_courtScaleY, DEFAULT_DST_SCALE_Y));
+        setCourtLodEnabled(a.getBoolean(R.styleable.CourtView_courtLodEnabled, false));
+        setCourtZoomEnabled(a.getBoolean(R.styleable.CourtView_courtZoomEnabled, false));
+        setCourtScrubEnabled(a.getBoolean(R.styleable.CourtView_courtScrubEnabled, false));
+        setCourtClusteringEnabled(a.getBoolean(R.styleable.CourtView_courtClusteringEnabled, false));
+        setCourtClusterSize(a.getDimension(R.styleable.CourtView_courtClusterSize, CLUSTER_SIZE_DP * density));
+        setCourtMaxZoom(a.getFloat(R.styleable.CourtView_courtMaxZoom, DEFAULT_MAX_ZOOM));
+        setMaxChildCount(a.getInt(R.styleable.CourtView_courtMaxChildCount, DEFAULT_MAX_CHILD_COUNT));
 
         final int insets = a.getDimensionPixelSize(R.styleable.CourtView_courtInsets, 0);
         setCourtInsets(
@@ -86,11 +259,53 @@ public class CourtView extends ViewGroup {
         a.recycle();
     }
 
+    /**
+     * Sets the court of a resource. Bitmaps are decoded once and shared by all the {@link CourtView}s of the process,
+     * with the config of {@link #setCourtBitmapConfig(Bitmap.Config)}.
+     */
     public void setCourt(int resource) {
-        setCourt(getResources().getDrawable(resource));
+        final Resources res = getResources();
+        final Bitmap bitmap = CourtBitmapCache.getInstance().get(res, resource, 0, 0, mCourtBitmapConfig);
+
+        mCourtAsync = false;
+        setCourt(bitmap != null ? new BitmapDrawable(res, bitmap) : res.getDrawable(resource), resource);
+    }
+
+    /**
+     * Sets the court of a bitmap resource without decoding it on the UI thread. A placeholder of the intrinsic size
+     * of the bitmap is drawn until the bitmap, sampled down to the size of the court bounds, is decoded in background.
+     */
+    public void setCourtAsync(int resource) {
+        final int[] size = new int[2];
+        if (!CourtBitmapCache.getIntrinsicSize(getResources(), resource, size)) {
+            setCourt(resource);
+            return;
+        }
+
+        mCourtAsync = true;
+        setCourt(new CourtPlaceholderDrawable(size[0], size[1], PLACEHOLDER_COLOR), resource);
+
+        mCourtAsyncResource = resource;
+        mCourtAsyncWidth = 0;
+        mCourtAsyncHeight = 0;
+
+        if (mFirstLayout) {
+            requestCourtDecode();
+        }
     }
 
     public void setCourt(Drawable drawable) {
+        mCourtAsync = false;
+        setCourt(drawable, 0);
+    }
+
+    private void setCourt(Drawable drawable, int resource) {
+        mCourtResource = resource;
+
+        // cancels the pending decoding.
+        mCourtAsyncResource = 0;
+        mCourtAsyncRequest++;
+
         if (mCourtDrawable == drawable) {
             return;
         }
@@ -121,6 +336,7 @@ public class CourtView extends ViewGroup {
         }
 
         if (dw != mCourtDrawableWidth || dh != mCourtDrawableHeight) {
+            mCourtBoundsValid = false;
             requestLayout();
         } else if (mFirstLayout) {
             configureBounds();
@@ -129,6 +345,163 @@ public class CourtView extends ViewGroup {
         invalidate();
     }
 
+    /**
+     * Config of the court bitmaps decoded from resources, {@link Bitmap.Config#HARDWARE} is only available since
+     * Android O. A court set from a resource is decoded again.
+     */
+    public void setCourtBitmapConfig(Bitmap.Config config) {
+        if (mCourtBitmapConfig != config) {
+            mCourtBitmapConfig = config;
+
+            if (mCourtResource != 0 && mCourtAsync) {
+                setCourtAsync(mCourtResource);
+            } else if (mCourtResource != 0) {
+                setCourt(mCourtResource);
+            }
+        }
+    }
+
+    /**
+     * Decodes the court of {@link #setCourtAsync(int)} for the size of the court bounds.
+     */
+    private void requestCourtDecode() {
+        final int resource = mCourtAsyncResource;
+        if (resource == 0 || mCourtDrawable == null) {
+            return;
+        }
+
+        final Rect bounds = mCourtDrawable.getBounds();
+        final int width = bounds.width();
+        final int height = bounds.height();
+        if (width <= 0 || height <= 0 || (width == mCourtAsyncWidth && height == mCourtAsyncHeight)) {
+            return;
+        }
+
+        mCourtAsyncWidth = width;
+        mCourtAsyncHeight = height;
+
+        final CourtBitmapCache cache = CourtBitmapCache.getInstance();
+        final Bitmap.Config config = mCourtBitmapConfig;
+
+        final Bitmap cached = cache.peek(getResources(), resource, width, height, config);
+        if (cached != null) {
+            setCourt(new BitmapDrawable(getResources(), cached), resource);
+            return;
+        }
+
+        final int request = ++mCourtAsyncRequest;
+        final Resources res = getResources();
+
+        CourtExecutors.getBackgroundExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final Bitmap bitmap = cache.get(res, resource, width, height, config);
+
+                post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (request == mCourtAsyncRequest && bitmap != null) {
+                            setCourt(new BitmapDrawable(res, bitmap), resource);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Switches the court to an entry of the archive, the archive MUST NOT be closed until then. The floor is decoded in
+     * background for the size of the court bounds, the current court is drawn until it is decoded. Insets of the
+     * entry are applied along with the floor, without another layout if the floor is of the same size.
+     */
+    public void setCourt(final CourtArchive archive, final int index) {
+        final int width = archive.getWidth(index);
+        final int height = archive.getHeight(index);
+        final int insetLeft = archive.getInsetLeft(index);
+        final int insetTop = archive.getInsetTop(index);
+        final int insetRight = archive.getInsetRight(index);
+        final int insetBottom = archive.getInsetBottom(index);
+
+        int targetWidth = 0;
+        int targetHeight = 0;
+        if (mFirstLayout && mCourtDrawable != null && mCourtDrawableWidth > 0 && mCourtDrawableHeight > 0) {
+            final Rect bounds = mCourtDrawable.getBounds();
+            targetWidth = Math.round((float) width * bounds.width() / mCourtDrawableWidth);
+            targetHeight = Math.round((float) height * bounds.height() / mCourtDrawableHeight);
+        }
+
+        final int decodeWidth = targetWidth;
+        final int decodeHeight = targetHeight;
+
+        // cancels the pending decoding.
+        mCourtAsyncResource = 0;
+        final int request = ++mCourtAsyncRequest;
+
+        final Resources res = getResources();
+        final Bitmap.Config config = mCourtBitmapConfig;
+
+        CourtExecutors.getBackgroundExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                final Bitmap bitmap = archive.decode(index, decodeWidth, decodeHeight, config);
+
+                post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (request == mCourtAsyncRequest && bitmap != null) {
+                            setCourt(new CourtFloorDrawable(res, bitmap, width, height),
+                                    insetLeft, insetTop, insetRight, insetBottom);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void setCourt(Drawable drawable, int insetLeft, int insetTop, int insetRight, int insetBottom) {
+        final boolean insetsChanged = mCourtDrawableInsetLeft != insetLeft || mCourtDrawableInsetTop != insetTop
+                || mCourtDrawableInsetRight != insetRight || mCourtDrawableInsetBottom != insetBottom;
+
+        final boolean sizeChanged = drawable.getIntrinsicWidth() != mCourtDrawableWidth
+                || drawable.getIntrinsicHeight() != mCourtDrawableHeight;
+
+        mCourtDrawableInsetLeft = insetLeft;
+        mCourtDrawableInsetTop = insetTop;
+        mCourtDrawableInsetRight = insetRight;
+        mCourtDrawableInsetBottom = insetBottom;
+
+        // configures the bounds with the insets, or requests a layout if the size is changed.
+        mCourtAsync = false;
+        setCourt(drawable, 0);
+
+        if (insetsChanged && !sizeChanged && mFirstLayout) {
+            for (int index = 0, count = Math.min(mChildPointCount, getChildCount()); index < count; index++) {
+                repositionChild(index, true);
+            }
+        }
+    }
+
+    public Bitmap.Config getCourtBitmapConfig() {
+        return mCourtBitmapConfig;
+    }
+
+    private static Bitmap.Config getBitmapConfig(int value) {
+        switch (value) {
+            case 1:
+                return Bitmap.Config.RGB_565;
+            case 2:
+                // HARDWARE does not exist before Android O.
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                        ? Bitmap.Config.HARDWARE : Bitmap.Config.ARGB_8888;
+            default:
+                return Bitmap.Config.ARGB_8888;
+        }
+    }
+
     public void setCourtScaleX(float scaleX) throws IllegalArgumentException {
         if (scaleX <= 0F || scaleX >= 1F) {
             throw new IllegalArgumentException("Scale X MUST in range (0F, 1F).");
@@ -136,6 +509,7 @@ public class CourtView extends ViewGroup {
 
         if (mCameraHelper.getScaleX() != scaleX) {
             mCameraHelper.setScaleX(scaleX);
+            mCourtBoundsValid = false;
 
             requestLayout();
             invalidate();
@@ -149,6 +523,7 @@ public class CourtView extends ViewGroup {
 
         if (mCameraHelper.getScaleY() != scaleY) {
             mCameraHelper.setScaleY(scaleY);
+            mLayoutMatrixValid = false;
 
             requestLayout();
             invalidate();
@@ -162,33 +537,242 @@ public class CourtView extends ViewGroup {
             mCourtDrawableInsetTop = top;
             mCourtDrawableInsetRight = right;
             mCourtDrawableInsetBottom = bottom;
+            mCourtBoundsValid = false;
 
             requestLayout();
             invalidate();
         }
     }
 
+    public void setCourtLodEnabled(boolean enabled) {
+        if (mCourtLodEnabled != enabled) {
+            mCourtLodEnabled = enabled;
+
+            if (enabled) {
+                prepareCourtMipmaps();
+            } else {
+                mCourtMipmaps.release();
+            }
+
+            invalidate();
+        }
+    }
+
+    public boolean isCourtLodEnabled() {
+        return mCourtLodEnabled;
+    }
+
+    public void setCourtZoomEnabled(boolean enabled) {
+        if (mCourtZoomEnabled != enabled) {
+            mCourtZoomEnabled = enabled;
+
+            if (enabled) {
+                ensureGestureDetectors();
+            } else {
+                resetCourtZoom();
+            }
+        }
+    }
+
+    private void ensureGestureDetectors() {
+        if (mGestureDetector == null) {
+            final CourtGestureListener listener = new CourtGestureListener();
+            mScaleGestureDetector = new ScaleGestureDetector(getContext(), listener);
+            mGestureDetector = new GestureDetector(getContext(), listener);
+        }
+    }
+
+    private boolean isCourtZoomActive() {
+        return mCourtZoomEnabled && isExpanded() && !isCourtAnimationRunning();
+    }
+
+    public boolean isCourtZoomEnabled() {
+        return mCourtZoomEnabled;
+    }
+
+    public void setCourtMaxZoom(float maxZoom) throws IllegalArgumentException {
+        if (maxZoom < 1F) {
+            throw new IllegalArgumentException("Max zoom MUST >= 1F.");
+        }
+
+        if (mCourtMaxZoom != maxZoom) {
+            mCourtMaxZoom = maxZoom;
+
+            if (mCourtZoom > maxZoom) {
+                setCourtZoom(maxZoom, getWidth() * .5F, getHeight() * .5F);
+            }
+        }
+    }
+
+    public float getCourtMaxZoom() {
+        return mCourtMaxZoom;
+    }
+
+    public void setCourtZoom(float zoom, float focusX, float focusY) {
+        final float z = Math.max(1F, Math.min(zoom, mCourtMaxZoom));
+        final float fx = focusX - (getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
+        final float fy = focusY - (getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
+
+        final float ratio = z / mCourtZoom;
+        mCourtZoom = z;
+
+        setCourtPan(fx - (fx - mCourtPanX) * ratio, fy - (fy - mCourtPanY) * ratio, ratio != 1F);
+    }
+
+    public float getCourtZoom() {
+        return mCourtZoom;
+    }
+
+    public void resetCourtZoom() {
+        final boolean changed = mCourtZoom != 1F;
+        mCourtZoom = 1F;
+
+        setCourtPan(0F, 0F, changed);
+    }
+
+    private void setCourtPan(float panX, float panY, boolean force) {
+        final float mx = (mCourtZoom - 1F) * getWidth() * .5F;
+        final float my = (mCourtZoom - 1F) * getHeight() * .5F;
+
+        panX = Math.max(-mx, Math.min(panX, mx));
+        panY = Math.max(-my, Math.min(panY, my));
+
+        if (force || mCourtPanX != panX || mCourtPanY != panY) {
+            mCourtPanX = panX;
+            mCourtPanY = panY;
+            mLayoutMatrixValid = false;
+
+            if (mCourtGestureRunning && mFirstLayout) {
+                offsetChildrenToLayout();
+                mCourtGestureLayoutPending = true;
+            } else {
+                requestLayout();
+            }
+
+            invalidate();
+        }
+    }
+
+    /**
+     * Moves the laid out children to the anchors of the layout matrix, without populating them again.
+     */
+    private void offsetChildrenToLayout() {
+        final int childCount = Math.min(getChildCount(), mChildPointCount);
+        final float[] matrix = getLayoutValues();
+        final float[] points = mChildPoints;
+        final float[] anchors = mChildAnchors;
+
+        for (int index = 0; index < childCount; index++) {
+            final float ax = anchors[index * 2];
+            final float ay = anchors[index * 2 + 1];
+
+            CourtProjector.mapAnchors(matrix, points, anchors, index, 1);
+
+            final View child = getChildAt(index);
+            child.offsetLeftAndRight((int) (anchors[index * 2] - ax));
+            child.offsetTopAndBottom((int) (anchors[index * 2 + 1] - ay));
+        }
+
+        updateChildrenTranslation();
+    }
+
+    private void endCourtGesture() {
+        mCourtGestureRunning = false;
+
+        if (mCourtGestureLayoutPending) {
+            mCourtGestureLayoutPending = false;
+            requestLayout();
+        }
+    }
+
+    /**
+     * The decoder is opened in background, and opened again when the view is attached after a detach.
+     */
+    public void setCourtTileSource(final int resource) {
+        mCourtTileSourceResource = resource;
+
+        final int request = ++mCourtTileSourceRequest;
+        final Context context = getContext().getApplicationContext();
+
+        CourtExecutors.getBackgroundExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                BitmapRegionDecoder decoder = null;
+                try {
+                    decoder = BitmapRegionDecoder.newInstance(context.getResources().openRawResource(resource), false);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to open the court tile source.", e);
+                }
+
+                final BitmapRegionDecoder result = decoder;
+                post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (request == mCourtTileSourceRequest) {
+                            setCourtTileSourceInternal(result);
+                        } else if (result != null) {
+                            result.recycle();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param decoder nullable, owned by the view from now on: it is recycled when replaced or when the view is
+     *                detached.
+     */
+    public void setCourtTileSource(@Nullable BitmapRegionDecoder decoder) {
+        mCourtTileSourceResource = 0;
+        mCourtTileSourceRequest++;
+
+        setCourtTileSourceInternal(decoder);
+    }
+
+    private void setCourtTileSourceInternal(@Nullable BitmapRegionDecoder decoder) {
+        if (decoder != null && mCourtTiles == null) {
+            mCourtTiles = new CourtTiles(new CourtTiles.Callback() {
+
+                @Override
+                public void onTileLoaded() {
+                    invalidate();
+                }
+            });
+        }
+
+        if (mCourtTiles != null) {
+            mCourtTiles.setDecoder(decoder);
+        }
+
+        invalidate();
+    }
+
     public void setExpanded(boolean expanded, boolean animate) {
         if (mExpanded != expanded) {
             mExpanded = expanded;
 
+            stopCourtAnimation();
+
+            if (!expanded) {
+                resetCourtZoom();
+            }
+
             final float sp = mCurrentProgress;
             final float ep = expanded ? 1F : 0F;
 
             if (!animate || Math.abs(sp - ep) <= .01F) {
                 setCourtProgress(ep);
             } else {
-                if (mCourtAnimator != null) {
-                    mCourtAnimator.cancel();
-                }
+                mCourtTweenRunning = true;
+                mCourtTweenStart = sp;
+                mCourtTweenEnd = ep;
+                mCourtTweenStartTime = SystemClock.uptimeMillis();
+                mCourtTweenDuration = (long) (ANIMATION_DURATION * Math.abs(sp - ep));
 
-                final ObjectAnimator animator = ObjectAnimator.ofFloat(this, "courtProgress", sp, ep);
-                animator.setDuration((long) (ANIMATION_DURATION * Math.abs(sp - ep)));
-                animator.setInterpolator(new AccelerateDecelerateInterpolator());
-                animator.addListener(new CourtAnimatorListener());
-                animator.start();
-
-                mCourtAnimator = animator;
+                startCourtAnimation();
             }
 
             onCourtStateChanged();
@@ -199,6 +783,12 @@ public class CourtView extends ViewGroup {
         if (mCurrentProgress != progress) {
             mCurrentProgress = progress;
 
+            // progress driven by the touch is not paced by frames.
+            if (mMetrics != null && (mCourtTweenRunning || mCourtSpring.isRunning())) {
+                mMetrics.onAnimationFrame();
+            }
+
+            updateChildrenTranslation();
             invalidate();
         }
     }
@@ -208,226 +798,1631 @@ public class CourtView extends ViewGroup {
     }
 
     public boolean isCourtAnimationRunning() {
-        return mCourtAnimator != null;
+        return mCourtTweenRunning || mCourtSpring.isRunning() || mScrubbing;
+    }
+
+    /**
+     * Sets the camera trajectory from the collapsed to the expanded court, null for the default one. The trajectory
+     * is baked when it is set, so it costs the same per frame as the default one.
+     */
+    public void setCourtTrajectory(@Nullable CourtTrajectory trajectory) {
+        if (mCameraHelper.getTrajectory() != trajectory) {
+            mCameraHelper.setTrajectory(trajectory);
+            mLayoutMatrixValid = false;
+
+            // the expanded court may be moved.
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    @Nullable
+    public CourtTrajectory getCourtTrajectory() {
+        return mCameraHelper.getTrajectory();
+    }
+
+    /**
+     * Lets users drag vertically to scrub the progress of the court, and fling to settle it with a spring.
+     */
+    public void setCourtScrubEnabled(boolean enabled) {
+        mCourtScrubEnabled = enabled;
+    }
+
+    public boolean isCourtScrubEnabled() {
+        return mCourtScrubEnabled;
+    }
+
+    private boolean onScrubTouchEvent(MotionEvent event) {
+        if (!mScrubbing && mCourtZoom > 1F) {
+            return false;
+        }
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // a down event not consumed by the children is dispatched to onInterceptTouchEvent, then to
+                // onTouchEvent, it is tracked once.
+                if (event.getEventTime() == mScrubDownTime) {
+                    return true;
+                }
+
+                mScrubDownTime = event.getEventTime();
+                mScrubDownX = event.getX();
+                mScrubDownY = event.getY();
+
+                if (mVelocityTracker == null) {
+                    mVelocityTracker = VelocityTracker.obtain();
+                } else {
+                    mVelocityTracker.clear();
+                }
+
+                mVelocityTracker.addMovement(event);
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                if (mVelocityTracker != null) {
+                    mVelocityTracker.addMovement(event);
+                }
+
+                final float dx = event.getX() - mScrubDownX;
+                final float dy = event.getY() - mScrubDownY;
+
+                if (!mScrubbing && Math.abs(dy) > mTouchSlop && Math.abs(dy) > Math.abs(dx)) {
+                    startScrub();
+
+                    // starts from here, so that the court does not jump by the touch slop.
+                    mScrubDownY = event.getY();
+                }
+
+                if (mScrubbing) {
+                    final float progress = mScrubStartProgress - (event.getY() - mScrubDownY) / getScrubDistance();
+                    setCourtProgress(Math.max(0F, Math.min(progress, 1F)));
+                }
+
+                return mScrubbing;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (mScrubbing) {
+                    float velocity = 0F;
+                    if (mVelocityTracker != null && event.getActionMasked() == MotionEvent.ACTION_UP) {
+                        mVelocityTracker.addMovement(event);
+                        mVelocityTracker.computeCurrentVelocity(1000);
+                        velocity = -mVelocityTracker.getYVelocity() / getScrubDistance();
+                    }
+
+                    endScrub(velocity);
+                    return true;
+                }
+
+                return false;
+        }
+
+        return mScrubbing;
+    }
+
+    private float getScrubDistance() {
+        return Math.max(getHeight() * .5F, 1F);
+    }
+
+    private void startScrub() {
+        stopCourtAnimation();
+
+        mScrubbing = true;
+        mScrubStartProgress = mCurrentProgress;
+
+        final ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+
+        onCourtStateChanged();
+    }
+
+    /**
+     * @param velocity progress per second.
+     */
+    private void endScrub(float velocity) {
+        mScrubbing = false;
+
+        final boolean expanded = mCurrentProgress + velocity * SCRUB_FLING_PROJECTION >= .5F;
+        if (!expanded) {
+            resetCourtZoom();
+        }
+
+        mExpanded = expanded;
+
+        mCourtSpring.start(mCurrentProgress, velocity, expanded ? 1F : 0F);
+        startCourtAnimation();
+
+        onCourtStateChanged();
+    }
+
+    private void startCourtAnimation() {
+        mCourtFrameTime = SystemClock.uptimeMillis();
+
+        if (mMetrics != null) {
+            mMetrics.onAnimationStart();
+        }
+
+        removeCallbacks(mCourtAnimationRunnable);
+        ViewCompat.postOnAnimation(this, mCourtAnimationRunnable);
+    }
+
+    private void onCourtAnimationFrame() {
+        final long now = SystemClock.uptimeMillis();
+
+        final boolean running;
+        if (mCourtTweenRunning) {
+            final float t = Math.min((float) (now - mCourtTweenStartTime) / Math.max(mCourtTweenDuration, 1L), 1F);
+
+            // same as AccelerateDecelerateInterpolator.
+            final float f = (float) (Math.cos((t + 1F) * Math.PI) / 2D) + .5F;
+            setCourtProgress(mCourtTweenStart + (mCourtTweenEnd - mCourtTweenStart) * f);
+
+            running = mCourtTweenRunning = t < 1F;
+        } else {
+            running = mCourtSpring.step((now - mCourtFrameTime) / 1000F);
+            setCourtProgress(mCourtSpring.getValue());
+        }
+
+        mCourtFrameTime = now;
+
+        if (running) {
+            ViewCompat.postOnAnimation(this, mCourtAnimationRunnable);
+        } else {
+            onCourtStateChanged();
+        }
+    }
+
+    private void stopCourtAnimation() {
+        if (mCourtTweenRunning || mCourtSpring.isRunning()) {
+            mCourtTweenRunning = false;
+            mCourtSpring.stop();
+
+            removeCallbacks(mCourtAnimationRunnable);
+        }
     }
 
     public void setAdapter(Adapter adapter) {
-        if (mAdapter == adapter && mDataSetObserver != null) {
+        if (mAdapter != null && mDataSetObserver != null) {
             mAdapter.unregisterDataSetObserver(mDataSetObserver);
         }
 
+        if (mAdapter != adapter) {
+            removeAllViews();
+            mScrapViews.clear();
+        }
+
         mAdapter = adapter;
 
-        if (adapter != null) {
-            if (mDataSetObserver == null) {
-                mDataSetObserver = new CourtDataSetObserver();
-            }
+        if (adapter != null) {
+            if (mDataSetObserver == null) {
+                mDataSetObserver = new CourtDataSetObserver();
+            }
+
+            adapter.registerDataSetObserver(mDataSetObserver);
+        }
+
+        onDataSetChanged();
+    }
+
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    void onDataSetChanged() {
+        mDataChanged = true;
+        mMarkerIndexInvalid = true;
+
+        requestLayout();
+    }
+
+    /**
+     * Max count of the children created for the visible markers of a {@link MarkerAdapter}, markers out of the view
+     * are culled first. Children of every item of other adapters are created, whatever the count.
+     */
+    public void setMaxChildCount(int maxChildCount) throws IllegalArgumentException {
+        if (maxChildCount <= 0) {
+            throw new IllegalArgumentException("Max child count MUST > 0.");
+        }
+
+        if (mMaxChildCount != maxChildCount) {
+            mMaxChildCount = maxChildCount;
+
+            requestLayout();
+        }
+    }
+
+    public int getMaxChildCount() {
+        return mMaxChildCount;
+    }
+
+    /**
+     * Binds the children of the items again. Adapters of stable ids MUST notify changed items this way, since a data
+     * set change reuses the children of the ids kept without binding them again.
+     */
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        final Adapter adapter = mAdapter;
+        if (adapter == null || mDataChanged) {
+            return;
+        }
+
+        for (int position = positionStart, end = positionStart + itemCount; position < end; position++) {
+            final int index = findChildIndex(position);
+            if (index < 0) {
+                onItemLocationChanged(position);
+                continue;
+            }
+
+            final View existing = getChildAt(index);
+            final int viewType = adapter.getItemViewType(position);
+            final View scrap = ((LayoutParams) existing.getLayoutParams()).mViewType == viewType ? existing : null;
+
+            // the child is measured and laid out alone, its layout requests do not need a layout of the court.
+            final View child;
+            mBlockLayoutRequests = true;
+            try {
+                child = adapter.getView(position, scrap, this);
+                if (mMetrics != null) {
+                    mMetrics.onRebind();
+                }
+
+                if (child != existing) {
+                    scrapChildAt(index);
+                    addChildInLayout(child, index, position, viewType);
+                } else {
+                    addChildInLayout(child, -1, position, viewType);
+                }
+            } finally {
+                mBlockLayoutRequests = false;
+            }
+
+            // the data set is changed while binding.
+            if (mDataChanged) {
+                requestLayout();
+                return;
+            }
+
+            repositionChild(index, child != existing);
+        }
+    }
+
+    public void notifyItemLocationChanged(int positionStart, int itemCount) {
+        final Adapter adapter = mAdapter;
+        if (adapter == null || mDataChanged) {
+            return;
+        }
+
+        for (int position = positionStart, end = positionStart + itemCount; position < end; position++) {
+            final int index = findChildIndex(position);
+            if (index < 0) {
+                onItemLocationChanged(position);
+                continue;
+            }
+
+            if (adapter instanceof MarkerAdapter) {
+                ((MarkerAdapter) adapter).getItemLocation(position, (LayoutParams) getChildAt(index).getLayoutParams());
+            }
+
+            repositionChild(index);
+        }
+    }
+
+    private void onItemLocationChanged(int position) {
+        if (mAdapter instanceof MarkerAdapter && position >= 0 && position < mAdapter.getCount()) {
+            final LayoutParams location = mTmpLocation;
+            ((MarkerAdapter) mAdapter).getItemLocation(position, location);
+            updateMarkerIndex(position, location);
+
+            // the marker comes into the view.
+            if (isLocationVisible(location)) {
+                requestLayout();
+            }
+        }
+    }
+
+    private void repositionChild(int index) {
+        repositionChild(index, false);
+    }
+
+    /**
+     * @param force true if the bounds of the court are changed, otherwise the child is not repositioned if it is
+     *              neither moved nor resized.
+     */
+    private void repositionChild(int index, boolean force) {
+        final View child = getChildAt(index);
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+
+        updateMarkerIndex(lp.mPosition, lp);
+
+        if (!mFirstLayout || index >= mChildPointCount) {
+            requestLayout();
+            return;
+        }
+
+        if (!force && !lp.isLocationChanged() && !child.isLayoutRequested()) {
+            return;
+        }
+
+        final Rect bounds = mCourtBounds;
+        final float[] points = mChildPoints;
+        final float[] anchors = mChildAnchors;
+
+        points[index * 2] = mapLocation(lp.x, lp.viewportLeft, lp.viewportRight, bounds.left, bounds.right);
+        points[index * 2 + 1] = mapLocation(lp.y, lp.viewportTop, lp.viewportBottom, bounds.top, bounds.bottom);
+        lp.onLocationLaidOut();
+
+        CourtProjector.mapAnchors(getLayoutValues(), points, anchors, index, 1);
+
+        if (child.getVisibility() != GONE) {
+            final int centerX = (getWidth() + getPaddingLeft() - getPaddingRight()) / 2;
+            final int centerY = (getHeight() + getPaddingTop() - getPaddingBottom()) / 2;
+
+            layoutChild(child, (int) anchors[index * 2] + centerX, (int) anchors[index * 2 + 1] + centerY,
+                    ViewCompat.getLayoutDirection(this));
+
+            updateChildTranslation(index);
+        }
+
+        // the marker leaves the view.
+        if (mAdapter instanceof MarkerAdapter && !isLocationVisible(lp)) {
+            requestLayout();
+        }
+    }
+
+    private boolean isLocationVisible(LayoutParams location) {
+        final Rect bounds = mCourtBounds;
+        final float[] points = mTmpPoints;
+        points[0] = mapLocation(location.x, location.viewportLeft, location.viewportRight, bounds.left, bounds.right);
+        points[1] = mapLocation(location.y, location.viewportTop, location.viewportBottom, bounds.top, bounds.bottom);
+        getLayoutMatrix().mapPoints(points, 0, points, 0, 1);
+
+        final int margin = mMaxChildExtent;
+        final float x = points[0] + (getWidth() + getPaddingLeft() - getPaddingRight()) / 2;
+        final float y = points[1] + (getHeight() + getPaddingTop() - getPaddingBottom()) / 2;
+
+        return x >= -margin && x <= getWidth() + margin && y >= -margin && y <= getHeight() + margin;
+    }
+
+    private void updateMarkerIndex(int position, LayoutParams location) {
+        if (!mMarkerIndexInvalid) {
+            mMarkerIndex.set(position,
+                    mapLocation(location.x, location.viewportLeft, location.viewportRight, 0F, 1F),
+                    mapLocation(location.y, location.viewportTop, location.viewportBottom, 0F, 1F));
+        }
+    }
+
+    private void ensureMarkerIndex() {
+        if (!mMarkerIndexInvalid) {
+            return;
+        }
+
+        mMarkerIndexInvalid = false;
+
+        final Adapter adapter = mAdapter;
+        final CourtSpatialIndex index = mMarkerIndex;
+        index.reset(adapter != null ? adapter.getCount() : 0);
+
+        if (adapter instanceof MarkerAdapter) {
+            final LayoutParams location = mTmpLocation;
+            for (int position = 0, count = adapter.getCount(); position < count; position++) {
+                ((MarkerAdapter) adapter).getItemLocation(position, location);
+                updateMarkerIndex(position, location);
+            }
+        } else {
+            // without locations of the adapter, only the children are known.
+            for (int childIndex = 0, childCount = getChildCount(); childIndex < childCount; childIndex++) {
+                final LayoutParams lp = (LayoutParams) getChildAt(childIndex).getLayoutParams();
+                updateMarkerIndex(lp.mPosition, lp);
+            }
+        }
+    }
+
+    /**
+     * Finds the marker of the adapter at the given point of the view, by mapping the point back to the court at the
+     * current progress.
+     *
+     * @return position of the marker, or -1 if there is none.
+     */
+    public int pointToPosition(float x, float y) {
+        if (mAdapter == null || mDataChanged || !isChildrenVisible() || !unmapTouchPoint(x, y)) {
+            return -1;
+        }
+
+        ensureMarkerIndex();
+
+        final float[] points = mTmpTouchPoints;
+        return mMarkerIndex.findNearest(points[0], points[1], points[2], points[3]);
+    }
+
+    /**
+     * Finds the marker of the marker layer at the given point of the view.
+     *
+     * @return index of the marker, or -1 if there is none.
+     */
+    public int pointToMarkerLayerIndex(float x, float y) {
+        if (mMarkerLayer.isEmpty() || !unmapTouchPoint(x, y)) {
+            return -1;
+        }
+
+        final float[] points = mTmpTouchPoints;
+        return mMarkerLayer.findNearest(points[0], points[1], points[2], points[3]);
+    }
+
+    /**
+     * Maps the touch point back to the court, fills the point and the touch radii of the court into the first 4
+     * values of {@link #mTmpTouchPoints}.
+     */
+    private boolean unmapTouchPoint(float x, float y) {
+        final float r = mTouchRadius;
+        final float[] points = mTmpTouchPoints;
+        points[0] = x;
+        points[1] = y;
+        points[2] = x + r;
+        points[3] = y;
+        points[4] = x;
+        points[5] = y + r;
+
+        if (!unmapCourtPoints(points, points, 3, mCurrentProgress)) {
+            return false;
+        }
+
+        // the radii are stretched by the perspective, take the larger extent of both axes.
+        final float cx = points[0];
+        final float cy = points[1];
+        final float rx = Math.max(Math.abs(points[2] - cx), Math.abs(points[4] - cx));
+        final float ry = Math.max(Math.abs(points[3] - cy), Math.abs(points[5] - cy));
+
+        points[2] = rx;
+        points[3] = ry;
+        return true;
+    }
+
+    private boolean isMarkerAt(float x, float y) {
+        return pointToPosition(x, y) >= 0 || pointToMarkerLayerIndex(x, y) >= 0;
+    }
+
+    private boolean performMarkerClick(float x, float y) {
+        final OnMarkerClickListener listener = mOnMarkerClickListener;
+        if (listener == null) {
+            return false;
+        }
+
+        // children are drawn above the marker layer.
+        final int position = pointToPosition(x, y);
+        if (position >= 0) {
+            listener.onMarkerClick(this, position);
+            return true;
+        }
+
+        final int index = pointToMarkerLayerIndex(x, y);
+        if (index >= 0) {
+            listener.onMarkerLayerClick(this, index);
+            return true;
+        }
+
+        return false;
+    }
+
+    public void setOnMarkerClickListener(@Nullable OnMarkerClickListener listener) {
+        mOnMarkerClickListener = listener;
+
+        if (listener != null) {
+            ensureGestureDetectors();
+        }
+    }
+
+    private int findChildIndex(int position) {
+        int low = 0;
+        int high = getChildCount() - 1;
+
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midPosition = getChildPosition(mid);
+
+            if (midPosition < position) {
+                low = mid + 1;
+            } else if (midPosition > position) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private void populateChildren(boolean rebind, float[] matrix, int centerX, int centerY) {
+        final Adapter adapter = mAdapter;
+        final int positionCount = adapter != null ? findVisiblePositions(adapter, matrix, centerX, centerY) : 0;
+        final int[] positions = mPopulatePositions;
+
+        if (rebind) {
+            mMarkerIndexInvalid = true;
+        }
+
+        if (rebind && adapter != null && adapter.hasStableIds()) {
+            populateStableChildren(adapter, positions, positionCount);
+            return;
+        }
+
+        int childIndex = 0;
+        for (int index = 0; index < positionCount; index++) {
+            final int position = positions[index];
+
+            while (childIndex < getChildCount() && getChildPosition(childIndex) < position) {
+                scrapChildAt(childIndex);
+            }
+
+            final View existing = childIndex < getChildCount() && getChildPosition(childIndex) == position
+                    ? getChildAt(childIndex) : null;
+
+            if (existing != null && !rebind) {
+                childIndex++;
+                continue;
+            }
+
+            final int viewType = adapter.getItemViewType(position);
+
+            View scrap = existing;
+            if (scrap == null || ((LayoutParams) scrap.getLayoutParams()).mViewType != viewType) {
+                scrap = getScrapView(viewType);
+            }
+
+            final View child = adapter.getView(position, scrap, this);
+            if (scrap != null && scrap != existing && child != scrap) {
+                putScrapView(scrap, viewType);
+            }
+
+            if (existing != null && mMetrics != null) {
+                mMetrics.onRebind();
+            }
+
+            if (child != existing && existing != null) {
+                scrapChildAt(childIndex);
+            }
+
+            addChildInLayout(child, child != existing ? childIndex : -1, position, viewType);
+            childIndex++;
+        }
+
+        while (childIndex < getChildCount()) {
+            scrapChildAt(childIndex);
+        }
+    }
+
+    /**
+     * Children of the ids kept by the data set change are reused without binding them again, only their locations
+     * are asked from a {@link MarkerAdapter}. Changed items are bound by {@link #notifyItemRangeChanged(int, int)}.
+     */
+    private void populateStableChildren(Adapter adapter, int[] positions, int positionCount) {
+        final LongSparseArray<View> stableViews = mStableViews;
+        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
+            final View child = getChildAt(index);
+            stableViews.put(((LayoutParams) child.getLayoutParams()).mItemId, child);
+        }
+
+        detachAllViewsFromParent();
+
+        for (int index = 0; index < positionCount; index++) {
+            final int position = positions[index];
+            final long itemId = adapter.getItemId(position);
+            final int viewType = adapter.getItemViewType(position);
+
+            final View existing = stableViews.get(itemId);
+            if (existing != null) {
+                stableViews.remove(itemId);
+
+                final LayoutParams lp = (LayoutParams) existing.getLayoutParams();
+                if (lp.mViewType == viewType) {
+                    if (adapter instanceof MarkerAdapter) {
+                        ((MarkerAdapter) adapter).getItemLocation(position, lp);
+                    }
+
+                    attachViewToParent(existing, index, lp);
+                    addChildInLayout(existing, -1, position, viewType, itemId);
+                    continue;
+                }
+            }
+
+            View scrap = existing;
+            if (scrap == null || ((LayoutParams) scrap.getLayoutParams()).mViewType != viewType) {
+                scrap = getScrapView(viewType);
+            }
+
+            final View child = adapter.getView(position, scrap, this);
+            if (scrap != null && scrap != existing && child != scrap) {
+                putScrapView(scrap, viewType);
+            }
+
+            if (existing != null && mMetrics != null) {
+                mMetrics.onRebind();
+            }
+
+            if (child != existing && existing != null) {
+                removeDetachedView(existing, false);
+                putScrapView(existing, ((LayoutParams) existing.getLayoutParams()).mViewType);
+            }
+
+            if (child.getParent() == this) {
+                if (indexOfChild(child) >= 0) {
+                    throw new IllegalStateException("View of position " + position + " is already a child.");
+                }
+
+                // a detached child of another id, reused by the adapter.
+                final long childId = ((LayoutParams) child.getLayoutParams()).mItemId;
+                if (stableViews.get(childId) == child) {
+                    stableViews.remove(childId);
+                }
+
+                attachViewToParent(child, index, child.getLayoutParams());
+                addChildInLayout(child, -1, position, viewType, itemId);
+            } else {
+                addChildInLayout(child, index, position, viewType, itemId);
+            }
+        }
+
+        for (int index = 0, size = stableViews.size(); index < size; index++) {
+            final View child = stableViews.valueAt(index);
+
+            // attached again, e.g. returned by the adapter for a scrap of the same id.
+            if (indexOfChild(child) >= 0) {
+                continue;
+            }
+
+            removeDetachedView(child, false);
+
+            child.setTranslationX(0F);
+            child.setTranslationY(0F);
+            putScrapView(child, ((LayoutParams) child.getLayoutParams()).mViewType);
+        }
+
+        stableViews.clear();
+    }
+
+    private int findVisiblePositions(Adapter adapter, float[] matrix, int centerX, int centerY) {
+        final int itemCount = adapter.getCount();
+
+        // items of other adapters have no location before their views are created.
+        final boolean culled = adapter instanceof MarkerAdapter;
+        final int maxCount = culled ? Math.min(itemCount, mMaxChildCount) : itemCount;
+
+        if (mPopulatePositions.length < maxCount) {
+            mPopulatePositions = new int[maxCount];
+        }
+
+        final int[] positions = mPopulatePositions;
+
+        if (!culled) {
+            for (int position = 0; position < maxCount; position++) {
+                positions[position] = position;
+            }
+
+            return maxCount;
+        }
+
+        if (mPopulatePoints.length < itemCount * 2) {
+            mPopulatePoints = new float[itemCount * 2];
+        }
+
+        final MarkerAdapter markers = (MarkerAdapter) adapter;
+        final LayoutParams location = mTmpLocation;
+        final Rect bounds = mCourtBounds;
+        final float[] points = mPopulatePoints;
+
+        for (int position = 0; position < itemCount; position++) {
+            markers.getItemLocation(position, location);
+
+            points[position * 2] = mapLocation(location.x,
+                    location.viewportLeft, location.viewportRight, bounds.left, bounds.right);
+            points[position * 2 + 1] = mapLocation(location.y,
+                    location.viewportTop, location.viewportBottom, bounds.top, bounds.bottom);
+        }
+
+        // markers just out of the view may be still partially visible.
+        final int margin = mMaxChildExtent;
+        return CourtProjector.findVisible(matrix, points, itemCount, -centerX - margin, -centerY - margin,
+                getWidth() - centerX + margin, getHeight() - centerY + margin, positions, maxCount);
+    }
+
+    private int getChildPosition(int index) {
+        return ((LayoutParams) getChildAt(index).getLayoutParams()).mPosition;
+    }
+
+    private void addChildInLayout(View child, int index, int position, int viewType) {
+        final Adapter adapter = mAdapter;
+        addChildInLayout(child, index, position, viewType, adapter.hasStableIds() ? adapter.getItemId(position) : -1L);
+    }
+
+    private void addChildInLayout(View child, int index, int position, int viewType, long itemId) {
+        final ViewGroup.LayoutParams params = child.getLayoutParams();
+
+        final LayoutParams lp;
+        if (checkLayoutParams(params)) {
+            lp = (LayoutParams) params;
+        } else {
+            lp = params == null ? generateDefaultLayoutParams() : generateLayoutParams(params);
+        }
+
+        lp.mPosition = position;
+        lp.mViewType = viewType;
+        lp.mItemId = itemId;
+
+        if (index >= 0) {
+            child.setVisibility(isChildrenVisible() ? VISIBLE : GONE);
+            addViewInLayout(child, index, lp, true);
+        }
+
+        if (child.getVisibility() != GONE) {
+            child.measure(mChildWidthMeasureSpec, mChildHeightMeasureSpec);
+
+            mMaxChildExtent = Math.max(mMaxChildExtent,
+                    Math.max(child.getMeasuredWidth(), child.getMeasuredHeight()));
+        }
+    }
+
+    private void scrapChildAt(int index) {
+        final View child = getChildAt(index);
+        removeViewsInLayout(index, 1);
+
+        child.setTranslationX(0F);
+        child.setTranslationY(0F);
+
+        putScrapView(child, ((LayoutParams) child.getLayoutParams()).mViewType);
+    }
+
+    @Nullable
+    private View getScrapView(int viewType) {
+        final ArrayList<View> scrapViews = mScrapViews.get(viewType);
+        if (scrapViews != null && !scrapViews.isEmpty()) {
+            return scrapViews.remove(scrapViews.size() - 1);
+        }
+
+        return null;
+    }
+
+    private void putScrapView(View scrap, int viewType) {
+        if (viewType == Adapter.IGNORE_ITEM_VIEW_TYPE) {
+            return;
+        }
+
+        ArrayList<View> scrapViews = mScrapViews.get(viewType);
+        if (scrapViews == null) {
+            scrapViews = new ArrayList<>();
+            mScrapViews.put(viewType, scrapViews);
+        }
+
+        if (scrapViews.size() < mMaxChildCount) {
+            scrapViews.add(scrap);
+        }
+    }
+
+    /**
+     * Moves the marker of the given position without a data set change, x and y in the viewport of its
+     * {@link LayoutParams}. Markers out of the view are asked from the {@link MarkerAdapter} again.
+     */
+    public void moveMarker(int position, float x, float y) {
+        if (mAdapter == null || mDataChanged) {
+            return;
+        }
+
+        final int index = findChildIndex(position);
+        if (index < 0) {
+            onItemLocationChanged(position);
+            return;
+        }
+
+        moveChild(index, x, y);
+    }
+
+    private void moveChild(int index, float x, float y) {
+        final LayoutParams lp = (LayoutParams) getChildAt(index).getLayoutParams();
+        if (lp.x != x || lp.y != y) {
+            lp.x = x;
+            lp.y = y;
+
+            repositionChild(index);
+        }
+    }
+
+    /**
+     * Sets the stream moving the markers, entity of the stream is the position of the adapter, or the index of the
+     * marker layer. Samples are interpolated on every frame.
+     * <p>
+     * Only the children in the view are moved, markers out of the view are asked from the {@link MarkerAdapter}
+     * again, so the adapter MUST also update its own locations from the stream.
+     */
+    public void setTrackingStream(@Nullable CourtTrackingStream stream) {
+        if (mTrackingStream != stream) {
+            mTrackingStream = stream;
+
+            removeCallbacks(mTrackingRunnable);
+            if (stream != null && ViewCompat.isAttachedToWindow(this)) {
+                ViewCompat.postOnAnimation(this, mTrackingRunnable);
+            }
+        }
+    }
+
+    @Nullable
+    public CourtTrackingStream getTrackingStream() {
+        return mTrackingStream;
+    }
+
+    private void onTrackingFrame() {
+        final CourtTrackingStream stream = mTrackingStream;
+        if (stream == null) {
+            return;
+        }
+
+        final boolean drained = stream.drain();
+        final long time = SystemClock.uptimeMillis() - stream.getInterpolationDelay();
+
+        if (drained || time <= stream.getLatestTime()) {
+            final float[] location = mTrackingLocation;
+
+            for (int entity = 0, count = stream.getEntityCount(); entity < count; entity++) {
+                if (stream.getLocation(entity, time, location)) {
+                    setMarkerLocation(entity, location[0], location[1]);
+                }
+            }
+
+            if (!mMarkerLayer.isEmpty()) {
+                invalidate();
+            }
+
+            ViewCompat.postOnAnimation(this, mTrackingRunnable);
+        } else {
+            // nothing to interpolate, polls the stream without waking up every frame.
+            postDelayed(mTrackingRunnable, TRACKING_IDLE_INTERVAL);
+        }
+    }
+
+    /**
+     * Moves the markers of the first count entities, entity is the position of the adapter, or the index of the
+     * marker layer. Like {@link #moveMarker(int, float, float)}, markers out of the view are asked from the
+     * {@link MarkerAdapter} again, so the adapter MUST also update its own locations.
+     *
+     * @param locations x and y of the entities, in range [0, 1] of the court insets.
+     */
+    public void setMarkerLocations(float[] locations, int count) {
+        for (int entity = 0; entity < count; entity++) {
+            setMarkerLocation(entity, locations[entity * 2], locations[entity * 2 + 1]);
+        }
+
+        if (!mMarkerLayer.isEmpty()) {
+            invalidate();
+        }
+    }
+
+    private void setMarkerLocation(int entity, float x, float y) {
+        if (entity < mMarkerLayer.getCount()) {
+            mMarkerLayer.setMarker(entity, x, y);
+        }
+
+        if (mAdapter == null || mDataChanged) {
+            return;
+        }
+
+        final int index = findChildIndex(entity);
+        if (index < 0) {
+            onItemLocationChanged(entity);
+            return;
+        }
+
+        final LayoutParams lp = (LayoutParams) getChildAt(index).getLayoutParams();
+        moveChild(index, lp.viewportLeft + (lp.viewportRight - lp.viewportLeft) * x,
+                lp.viewportTop + (lp.viewportBottom - lp.viewportTop) * y);
+    }
+
+    /**
+     * Sets markers drawn directly on the court floor, without any child view.
+     *
+     * @param points x and y of the markers, in range [0, 1] of the court insets.
+     * @param colors colors of the markers.
+     * @param sizes  diameters of the markers, in pixels of the expanded court.
+     */
+    public void setMarkerLayer(float[] points, int[] colors, float[] sizes, int count) {
+        setMarkerDataset(null);
+        mMarkerLayer.setMarkers(points, colors, sizes, count);
+
+        invalidate();
+    }
+
+    public void setMarkerLayerPoint(int index, float x, float y) {
+        mMarkerLayer.setMarker(index, x, y);
+
+        invalidate();
+    }
+
+    /**
+     * Sets the markers of the marker layer from a dataset, the layer follows the changes of the dataset. Only the
+     * locations are updated when only the locations are changed.
+     */
+    public void setMarkerDataset(@Nullable CourtDataset dataset) {
+        if (mMarkerDataset == dataset) {
+            return;
+        }
+
+        if (mMarkerDataset != null) {
+            mMarkerDataset.unregisterObserver(mMarkerDatasetObserver);
+        }
+
+        mMarkerDataset = dataset;
+
+        if (dataset != null) {
+            if (mMarkerDatasetObserver == null) {
+                mMarkerDatasetObserver = new MarkerDatasetObserver();
+            }
+
+            // observed while attached only, so that the dataset does not keep a detached view.
+            if (ViewCompat.isAttachedToWindow(this)) {
+                dataset.registerObserver(mMarkerDatasetObserver);
+            }
+
+            mMarkerLayer.setMarkers(dataset);
+        } else {
+            mMarkerLayer.clear();
+        }
+
+        invalidate();
+    }
+
+    @Nullable
+    public CourtDataset getMarkerDataset() {
+        return mMarkerDataset;
+    }
+
+    public int getMarkerLayerCount() {
+        return mMarkerLayer.getCount();
+    }
+
+    /**
+     * Clusters the markers of the marker layer by grid cells of the court, cells are halved while the court is
+     * expanded or zoomed until the markers are apart. Clusters of more markers are drawn as badges of their count.
+     */
+    public void setCourtClusteringEnabled(boolean enabled) {
+        if (mMarkerLayer.isClusteringEnabled() != enabled) {
+            mMarkerLayer.setClusteringEnabled(enabled);
+
+            invalidate();
+        }
+    }
+
+    public boolean isCourtClusteringEnabled() {
+        return mMarkerLayer.isClusteringEnabled();
+    }
+
+    /**
+     * @param size min size of the cells of the clusters, in pixels.
+     */
+    public void setCourtClusterSize(float size) throws IllegalArgumentException {
+        if (size <= 0F) {
+            throw new IllegalArgumentException("Cluster size MUST > 0.");
+        }
+
+        if (mClusterSize != size) {
+            mClusterSize = size;
+
+            invalidate();
+        }
+    }
+
+    public float getCourtClusterSize() {
+        return mClusterSize;
+    }
+
+    public void clearMarkerLayer() {
+        setMarkerDataset(null);
+        mMarkerLayer.clear();
+
+        invalidate();
+    }
+
+    /**
+     * Sets the heatmap drawn on the court floor, below the markers. The heatmap is rendered in background, the view is
+     * invalidated every time a new bitmap is published.
+     */
+    public void setHeatmap(@Nullable CourtHeatmap heatmap) {
+        if (mHeatmap != heatmap) {
+            if (mHeatmap != null) {
+                mHeatmap.setCallback(null);
+            }
+
+            mHeatmap = heatmap;
+
+            if (heatmap != null) {
+                heatmap.setCallback(mHeatmapCallback);
+            }
+
+            invalidate();
+        }
+    }
+
+    @Nullable
+    public CourtHeatmap getHeatmap() {
+        return mHeatmap;
+    }
+
+    /**
+     * Enables the metrics of measure, layout, draw, camera matrices, rebinds and dropped frames of the court
+     * animation. Disabled by default, metrics are cleared when disabled.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled && mMetrics == null) {
+            mMetrics = new CourtMetrics();
+            updateMetricsRefreshRate();
+        } else if (!enabled) {
+            mMetrics = null;
+        }
+    }
+
+    /**
+     * @return the metrics, or null if they are not enabled.
+     */
+    @Nullable
+    public CourtMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private void updateMetricsRefreshRate() {
+        final Display display = ViewCompat.getDisplay(this);
+        if (mMetrics != null && display != null) {
+            mMetrics.setRefreshRate(display.getRefreshRate());
+        }
+    }
+
+    public void setOnCourtStateChangedListener(OnCourtStateChangedListener listener) {
+        mOnCourtStateChangedListener = listener;
+    }
+
+    void onCourtStateChanged() {
+        final int visibility = isChildrenVisible() ? VISIBLE : GONE;
+
+        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
+            getChildAt(index).setVisibility(visibility);
+        }
+
+        if (mOnCourtStateChangedListener != null) {
+            mOnCourtStateChangedListener.onCourtStateChanged(this);
+        }
+    }
+
+    private boolean isChildrenVisible() {
+        return isExpanded() || isCourtAnimationRunning();
+    }
+
+    public CameraState getCameraState() {
+        return mCameraHelper.getCameraState();
+    }
+
+    public CourtCamera getCourtCamera() {
+        return mCameraHelper.getCamera();
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams layoutParams) {
+        return layoutParams instanceof LayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams();
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams layoutParams) {
+        return new LayoutParams(layoutParams);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final CourtMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.begin(CourtMetrics.SECTION_MEASURE);
+        }
+
+        final int ph = getPaddingLeft() + getPaddingRight();
+        final int pv = getPaddingTop() + getPaddingBottom();
+
+        final boolean hasW = MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED;
+        final boolean hasH = MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED;
+
+        final float fw = mCourtDrawableWidth;
+        final float fh = mCourtDrawableHeight;
+
+        int mw = Math.max((hasW ? MeasureSpec.getSize(widthMeasureSpec) : 0) - ph, 0);
+        int mh = Math.max((hasH ? MeasureSpec.getSize(heightMeasureSpec) : 0) - pv, 0);
+
+        if (fw > 0F && fh > 0F) {
+            final float sh = fh * mCameraHelper.getScaleX();
+
+            if (hasW && hasH) {
+                final float scale = Math.min(mw / fw, mh / sh);
+                mw = Math.round(fw * scale);
+                mh = Math.round(sh * scale);
+            } else if (hasW) {
+                mh = Math.round(sh * mw / fw);
+            } else if (hasH) {
+                mw = Math.round(fw * mh / sh);
+            } else {
+                mw = Math.round(fw);
+                mh = Math.round(sh);
+            }
+        }
+
+        mw = resolveSize(Math.max(mw + ph, getSuggestedMinimumWidth()), widthMeasureSpec);
+        mh = resolveSize(Math.max(mh + pv, getSuggestedMinimumHeight()), heightMeasureSpec);
+
+        final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(mw, MeasureSpec.AT_MOST);
+        final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(mh, MeasureSpec.AT_MOST);
+
+        // extent of the current children only, so that the margin of the culling shrinks with them.
+        int maxChildExtent = 0;
+        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
+            final View child = getChildAt(index);
+            if (child.getVisibility() != GONE) {
+                child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+
+                maxChildExtent = Math.max(maxChildExtent,
+                        Math.max(child.getMeasuredWidth(), child.getMeasuredHeight()));
+            }
+        }
+
+        mMaxChildExtent = maxChildExtent;
+
+        mChildWidthMeasureSpec = childWidthMeasureSpec;
+        mChildHeightMeasureSpec = childHeightMeasureSpec;
+
+        setMeasuredDimension(mw, mh);
+
+        if (metrics != null) {
+            metrics.end(CourtMetrics.SECTION_MEASURE);
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!mBlockLayoutRequests) {
+            super.requestLayout();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        final CourtMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.begin(CourtMetrics.SECTION_LAYOUT);
+        }
+
+        if (!mCourtBoundsValid || mCourtBoundsWidth != right - left - getPaddingLeft() - getPaddingRight()
+                || mCourtBoundsHeight != bottom - top - getPaddingTop() - getPaddingBottom()) {
+            configureBounds();
+        }
+
+        final Rect bounds = mCourtBounds;
+        final float[] matrix = getLayoutValues();
+
+        final int centerX = (right - left + getPaddingLeft() - getPaddingRight()) / 2;
+        final int centerY = (bottom - top + getPaddingTop() - getPaddingBottom()) / 2;
+        final int layoutDirection = ViewCompat.getLayoutDirection(this);
+
+        populateChildren(mDataChanged, matrix, centerX, centerY);
+        mDataChanged = false;
+
+        final int childCount = getChildCount();
+        ensureChildPointsCapacity(childCount);
+
+        final float[] points = mChildPoints;
+        final float[] anchors = mChildAnchors;
+
+        for (int index = 0; index < childCount; index++) {
+            final LayoutParams lp = (LayoutParams) getChildAt(index).getLayoutParams();
+            points[index * 2] = mapLocation(lp.x, lp.viewportLeft, lp.viewportRight, bounds.left, bounds.right);
+            points[index * 2 + 1] = mapLocation(lp.y, lp.viewportTop, lp.viewportBottom, bounds.top, bounds.bottom);
+            lp.onLocationLaidOut();
+        }
+
+        CourtProjector.mapAnchors(matrix, points, anchors, 0, childCount);
+
+        for (int index = 0; index < childCount; index++) {
+            final View child = getChildAt(index);
+            if (child.getVisibility() != GONE) {
+                final int cx = (int) anchors[index * 2] + centerX;
+                final int cy = (int) anchors[index * 2 + 1] + centerY;
+
+                layoutChild(child, cx, cy, layoutDirection);
+            }
+        }
+
+        mChildPointCount = childCount;
+        mFirstLayout = true;
+
+        updateChildrenTranslation();
+
+        if (metrics != null) {
+            metrics.end(CourtMetrics.SECTION_LAYOUT);
+        }
+    }
+
+    @SuppressLint("RtlHardcoded")
+    private void layoutChild(View child, int cx, int cy, int layoutDirection) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+
+        final int cw = child.getMeasuredWidth();
+        final int ch = child.getMeasuredHeight();
+
+        final int absoluteGravity = GravityCompat.getAbsoluteGravity(lp.gravity, layoutDirection);
+
+        int cl;
+        int ct;
+
+        switch (absoluteGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.LEFT:
+                cl = cx + lp.leftMargin;
+                break;
+            case Gravity.RIGHT:
+                cl = cx - cw - lp.rightMargin;
+                break;
+            case Gravity.CENTER_HORIZONTAL:
+            default:
+                cl = cx - cw / 2 + lp.leftMargin - lp.rightMargin;
+                break;
+        }
+
+        switch (absoluteGravity & Gravity.VERTICAL_GRAVITY_MASK) {
+            case Gravity.TOP:
+                ct = cy + lp.topMargin;
+                break;
+            case Gravity.BOTTOM:
+                ct = cy - ch - lp.bottomMargin;
+                break;
+            case Gravity.CENTER_VERTICAL:
+            default:
+                ct = cy - ch / 2 + lp.topMargin - lp.bottomMargin;
+                break;
+        }
+
+        child.layout(cl, ct, cl + cw, ct + ch);
+    }
+
+    private void ensureChildPointsCapacity(int pointCount) {
+        if (mChildPoints.length < pointCount * 2) {
+            mChildPoints = new float[pointCount * 2];
+            mChildAnchors = new float[pointCount * 2];
+            mChildFramePoints = new float[pointCount * 2];
+        }
+    }
+
+    private void updateChildrenTranslation() {
+        final int childCount = Math.min(getChildCount(), mChildPointCount);
+        if (childCount <= 0) {
+            return;
+        }
+
+        final float progress = mCurrentProgress;
+        if (progress != 1F) {
+            getCourtMatrix(progress, false).mapPoints(mChildFramePoints, 0, mChildPoints, 0, childCount);
+        }
+
+        for (int index = 0; index < childCount; index++) {
+            applyChildTranslation(index, progress);
+        }
+    }
+
+    private void updateChildTranslation(int index) {
+        final float progress = mCurrentProgress;
+        if (progress != 1F) {
+            getCourtMatrix(progress, false).mapPoints(mChildFramePoints, index * 2, mChildPoints, index * 2, 1);
+        }
+
+        applyChildTranslation(index, progress);
+    }
+
+    private void applyChildTranslation(int index, float progress) {
+        final View child = getChildAt(index);
+        if (child.getVisibility() != GONE) {
+            if (progress != 1F) {
+                child.setTranslationX(mChildFramePoints[index * 2] - mChildAnchors[index * 2]);
+                child.setTranslationY(mChildFramePoints[index * 2 + 1] - mChildAnchors[index * 2 + 1]);
+            } else {
+                child.setTranslationX(0F);
+                child.setTranslationY(0F);
+            }
+        }
+    }
+
+    /**
+     * Maps points of the court (x and y in range [0, 1] of the court insets) to points of this view, at the given
+     * progress of the court transition. The {@code src} and {@code dst} may be the same array.
+     */
+    public void mapCourtPoints(float[] src, float[] dst, int count, float progress) {
+        final Rect bounds = mCourtBounds;
+        final int bw = bounds.width();
+        final int bh = bounds.height();
+
+        for (int index = 0, length = count * 2; index < length; index += 2) {
+            dst[index] = bounds.left + bw * src[index];
+            dst[index + 1] = bounds.top + bh * src[index + 1];
+        }
+
+        getCourtMatrix(progress, false).mapPoints(dst, 0, dst, 0, count);
+
+        final float centerX = (getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
+        final float centerY = (getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
+
+        for (int index = 0, length = count * 2; index < length; index += 2) {
+            dst[index] += centerX;
+            dst[index + 1] += centerY;
+        }
+    }
+
+    /**
+     * Inverse of {@link #mapCourtPoints(float[], float[], int, float)}, returns false if the court can not be mapped
+     * back at the given progress.
+     */
+    public boolean unmapCourtPoints(float[] src, float[] dst, int count, float progress) {
+        final Matrix inverse = mTmpInverseMatrix;
+        if (!getCourtMatrix(progress, false).invert(inverse)) {
+            return false;
+        }
+
+        final float centerX = (getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
+        final float centerY = (getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
+
+        for (int index = 0, length = count * 2; index < length; index += 2) {
+            dst[index] = src[index] - centerX;
+            dst[index + 1] = src[index + 1] - centerY;
+        }
+
+        inverse.mapPoints(dst, 0, dst, 0, count);
+
+        final Rect bounds = mCourtBounds;
+        final float bw = bounds.width();
+        final float bh = bounds.height();
+
+        for (int index = 0, length = count * 2; index < length; index += 2) {
+            dst[index] = bw != 0F ? (dst[index] - bounds.left) / bw : 0F;
+            dst[index + 1] = bh != 0F ? (dst[index + 1] - bounds.top) / bh : 0F;
+        }
+
+        return true;
+    }
+
+    private static float mapLocation(float srcLocation, float srcStart, float srcEnd, float dstStart, float dstEnd) {
+        return CourtProjector.mapLocation(srcLocation, srcStart, srcEnd, dstStart, dstEnd);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final CourtMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.begin(CourtMetrics.SECTION_DRAW);
+        }
+
+        final Drawable court = mCourtDrawable;
+        final Bitmap heatmap = mHeatmap != null ? mHeatmap.getBitmap() : null;
+        if (court != null || heatmap != null || !mMarkerLayer.isEmpty()) {
+            final int saveCount = canvas.save();
+
+            final float centerX = (getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
+            final float centerY = (getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
+            canvas.translate(centerX, centerY);
 
-            adapter.registerDataSetObserver(mDataSetObserver);
-        }
+            final Matrix matrix = getCourtMatrix(mCurrentProgress, true);
+            canvas.concat(matrix);
 
-        onDataSetChanged();
-    }
+            if (court != null) {
+                if (getCourtLodDrawable() != null && mCourtMipmaps.isPrepared(court)) {
+                    mCourtMipmaps.draw(canvas, matrix);
+                } else {
+                    court.draw(canvas);
+                }
 
-    public Adapter getAdapter() {
-        return mAdapter;
-    }
+                if (mCourtTiles != null && mCourtTiles.hasDecoder()) {
+                    drawCourtTiles(canvas, matrix, court.getBounds());
+                }
+            }
 
-    void onDataSetChanged() {
-        int position = 0;
+            if (heatmap != null) {
+                mTmpRect.set(mCourtBounds);
+                canvas.drawBitmap(heatmap, null, mTmpRect, mHeatmapPaint);
+            }
 
-        final Adapter adapter = mAdapter;
-        if (adapter != null) {
-            final int visibility = isChildrenVisible() ? VISIBLE : GONE;
+            final int clusterLevel = getClusterLevel(matrix);
+            if (clusterLevel < 0) {
+                mMarkerLayer.draw(canvas);
+            } else {
+                mMarkerLayer.drawClusters(canvas, clusterLevel);
+            }
 
-            for (int itemCount = adapter.getCount(); position < itemCount; position++) {
-                final View scrap = getChildAt(position);
-                final View child = adapter.getView(position, scrap, this);
-                if (child != scrap) {
-                    child.setVisibility(visibility);
+            canvas.restoreToCount(saveCount);
 
-                    addView(child, position);
-                }
+            if (clusterLevel >= 0) {
+                mMarkerLayer.drawClusterBadges(canvas, matrix, centerX, centerY, clusterLevel);
             }
         }
 
-        final int removeCount = getChildCount() - position;
-        if (removeCount > 0) {
-            removeViews(position, removeCount);
+        if (metrics != null) {
+            metrics.end(CourtMetrics.SECTION_DRAW);
         }
     }
 
-    public void setOnCourtStateChangedListener(OnCourtStateChangedListener listener) {
-        mOnCourtStateChangedListener = listener;
-    }
+    /**
+     * Level of the clusters of the marker layer, by the projected size of the court insets on the screen.
+     */
+    private int getClusterLevel(Matrix matrix) {
+        final CourtMarkerLayer layer = mMarkerLayer;
+        if (!layer.isClusteringEnabled() || layer.isEmpty()) {
+            return -1;
+        }
 
-    void onCourtStateChanged() {
-        final int visibility = isChildrenVisible() ? VISIBLE : GONE;
+        final Rect bounds = mCourtBounds;
+        final float[] points = mTmpPoints;
+        points[0] = bounds.left;
+        points[1] = bounds.top;
+        points[2] = bounds.right;
+        points[3] = bounds.top;
+        points[4] = bounds.left;
+        points[5] = bounds.bottom;
+        matrix.mapPoints(points, 0, points, 0, 3);
+
+        final float scaleX = (float) Math.hypot(points[2] - points[0], points[3] - points[1]);
+        final float scaleY = (float) Math.hypot(points[4] - points[0], points[5] - points[1]);
+        return layer.getClusterLevel(scaleX, scaleY, mClusterSize);
+    }
 
-        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
-            getChildAt(index).setVisibility(visibility);
+    private void drawCourtTiles(Canvas canvas, Matrix matrix, Rect bounds) {
+        final Matrix inverse = mTmpInverseMatrix;
+        if (bounds.isEmpty() || !matrix.invert(inverse)) {
+            return;
         }
 
-        if (mOnCourtStateChangedListener != null) {
-            mOnCourtStateChangedListener.onCourtStateChanged(this);
+        final float l = -(getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
+        final float t = -(getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
+        final float r = l + getWidth();
+        final float b = t + getHeight();
+
+        // visible part of the floor.
+        final float[] points = mTmpPoints;
+        points[0] = l;
+        points[1] = t;
+        points[2] = r;
+        points[3] = t;
+        points[4] = l;
+        points[5] = b;
+        points[6] = r;
+        points[7] = b;
+        inverse.mapPoints(points, 0, points, 0, 4);
+
+        final RectF region = mTmpRect;
+        region.set(points[0], points[1], points[0], points[1]);
+        for (int index = 2; index < 8; index += 2) {
+            region.union(points[index], points[index + 1]);
         }
-    }
 
-    private boolean isChildrenVisible() {
-        return isExpanded() && !isCourtAnimationRunning();
-    }
+        if (!region.intersect(bounds.left, bounds.top, bounds.right, bounds.bottom)) {
+            return;
+        }
 
-    public CameraState getCameraState() {
-        return mCameraHelper.getCameraState();
+        // the nearest part of the floor needs the most details.
+        points[0] = region.left;
+        points[1] = region.bottom;
+        points[2] = region.left + 1F;
+        points[3] = region.bottom;
+        points[4] = region.left;
+        points[5] = region.bottom - 1F;
+        matrix.mapPoints(points, 6, points, 0, 3);
+
+        final float scale = Math.max(
+                (float) Math.hypot(points[8] - points[6], points[9] - points[7]),
+                (float) Math.hypot(points[10] - points[6], points[11] - points[7]));
+
+        final CourtTiles tiles = mCourtTiles;
+        final float sourceScale = (float) bounds.width() / tiles.getSourceWidth();
+        final float courtScale = mCourtDrawableWidth > 0 ? (float) mCourtDrawableWidth / tiles.getSourceWidth() : 0F;
+
+        // tiles are useless until the court drawable is magnified.
+        if (scale * sourceScale > courtScale) {
+            region.left = (region.left - bounds.left) / sourceScale;
+            region.top = (region.top - bounds.top) / sourceScale;
+            region.right = (region.right - bounds.left) / sourceScale;
+            region.bottom = (region.bottom - bounds.top) / sourceScale;
+
+            tiles.draw(canvas, bounds, region, scale * sourceScale);
+        }
     }
 
     @Override
-    protected boolean checkLayoutParams(ViewGroup.LayoutParams layoutParams) {
-        return layoutParams instanceof LayoutParams;
-    }
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        // steals vertical drags from the markers.
+        if (mCourtScrubEnabled) {
+            onScrubTouchEvent(event);
+            return mScrubbing;
+        }
 
-    @Override
-    protected LayoutParams generateDefaultLayoutParams() {
-        return new LayoutParams();
+        return super.onInterceptTouchEvent(event);
     }
 
     @Override
-    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams layoutParams) {
-        return new LayoutParams(layoutParams);
-    }
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = mCourtScrubEnabled && onScrubTouchEvent(event);
+        if (mScrubbing) {
+            return true;
+        }
 
-    @Override
-    public LayoutParams generateLayoutParams(AttributeSet attrs) {
-        return new LayoutParams(getContext(), attrs);
-    }
+        final boolean zoom = isCourtZoomActive();
+        if (zoom || mOnMarkerClickListener != null) {
+            mCourtGestureRunning = zoom;
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        final int ph = getPaddingLeft() + getPaddingRight();
-        final int pv = getPaddingTop() + getPaddingBottom();
+            handled |= zoom && mScaleGestureDetector.onTouchEvent(event);
+            handled |= mGestureDetector.onTouchEvent(event);
+        }
 
-        final boolean hasW = MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED;
-        final boolean hasH = MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED;
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            endCourtGesture();
+        }
 
-        final float fw = mCourtDrawableWidth;
-        final float fh = mCourtDrawableHeight;
+        return handled || super.onTouchEvent(event);
+    }
 
-        int mw = Math.max((hasW ? MeasureSpec.getSize(widthMeasureSpec) : 0) - ph, 0);
-        int mh = Math.max((hasH ? MeasureSpec.getSize(heightMeasureSpec) : 0) - pv, 0);
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
 
-        if (fw > 0F && fh > 0F) {
-            final float sh = fh * mCameraHelper.getScaleX();
+        updateMetricsRefreshRate();
 
-            if (hasW && hasH) {
-                final float scale = Math.min(mw / fw, mh / sh);
-                mw = Math.round(fw * scale);
-                mh = Math.round(sh * scale);
-            } else if (hasW) {
-                mh = Math.round(sh * mw / fw);
-            } else if (hasH) {
-                mw = Math.round(fw * mh / sh);
-            } else {
-                mw = Math.round(fw);
-                mh = Math.round(sh);
-            }
+        if (mTrackingStream != null) {
+            removeCallbacks(mTrackingRunnable);
+            ViewCompat.postOnAnimation(this, mTrackingRunnable);
         }
 
-        mw = resolveSize(Math.max(mw + ph, getSuggestedMinimumWidth()), widthMeasureSpec);
-        mh = resolveSize(Math.max(mh + pv, getSuggestedMinimumHeight()), heightMeasureSpec);
-
-        final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(mw, MeasureSpec.AT_MOST);
-        final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(mh, MeasureSpec.AT_MOST);
-        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
-            final View child = getChildAt(index);
-            if (child.getVisibility() != GONE) {
-                child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
-            }
+        // changes of the dataset are missed while detached.
+        if (mMarkerDataset != null) {
+            mMarkerDataset.registerObserver(mMarkerDatasetObserver);
+            mMarkerLayer.setMarkers(mMarkerDataset);
         }
 
-        setMeasuredDimension(mw, mh);
+        if (mCourtTileSourceResource != 0 && (mCourtTiles == null || !mCourtTiles.hasDecoder())) {
+            setCourtTileSource(mCourtTileSourceResource);
+        }
     }
 
-    @SuppressLint("RtlHardcoded")
     @Override
-    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        configureBounds();
-
-        final Rect bounds = mCourtBounds;
-        final Matrix matrix = mCameraHelper.getMatrix(1F, false);
-
-        final int centerX = (right - left + getPaddingLeft() - getPaddingRight()) / 2;
-        final int centerY = (bottom - top + getPaddingTop() - getPaddingBottom()) / 2;
-        final int layoutDirection = ViewCompat.getLayoutDirection(this);
-
-        for (int index = 0, childCount = getChildCount(); index < childCount; index++) {
-            final View child = getChildAt(index);
-            if (child.getVisibility() != GONE) {
-                final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-
-                final float lx = mapLocation(lp.x, lp.viewportLeft, lp.viewportRight, bounds.left, bounds.right);
-                final float ly = mapLocation(lp.y, lp.viewportTop, lp.viewportBottom, bounds.top, bounds.bottom);
-                final float[] point = mCameraHelper.mapPoint(matrix, lx, ly);
-
-                final int cx = Math.round(point[0]) + centerX;
-                final int cy = Math.round(point[1]) + centerY;
-                final int cw = child.getMeasuredWidth();
-                final int ch = child.getMeasuredHeight();
-
-                final int absoluteGravity = GravityCompat.getAbsoluteGravity(lp.gravity, layoutDirection);
-
-                int cl;
-                int ct;
-
-                switch (absoluteGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
-                    case Gravity.LEFT:
-                        cl = cx + lp.leftMargin;
-                        break;
-                    case Gravity.RIGHT:
-                        cl = cx - cw - lp.rightMargin;
-                        break;
-                    case Gravity.CENTER_HORIZONTAL:
-                    default:
-                        cl = cx - cw / 2 + lp.leftMargin - lp.rightMargin;
-                        break;
-                }
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
 
-                switch (absoluteGravity & Gravity.VERTICAL_GRAVITY_MASK) {
-                    case Gravity.TOP:
-                        ct = cy + lp.topMargin;
-                        break;
-                    case Gravity.BOTTOM:
-                        ct = cy - ch - lp.bottomMargin;
-                        break;
-                    case Gravity.CENTER_VERTICAL:
-                    default:
-                        ct = cy - ch / 2 + lp.topMargin - lp.bottomMargin;
-                        break;
-                }
+        removeCallbacks(mTrackingRunnable);
 
-                child.layout(cl, ct, cl + cw, ct + ch);
-            }
+        if (mMarkerDataset != null) {
+            mMarkerDataset.unregisterObserver(mMarkerDatasetObserver);
         }
 
-        mFirstLayout = true;
-    }
+        // jumps to the end of the animation.
+        if (isCourtAnimationRunning() && !mScrubbing) {
+            final float progress = mCourtTweenRunning ? mCourtTweenEnd : mCourtSpring.getTarget();
 
-    private static float mapLocation(float srcLocation, float srcStart, float srcEnd, float dstStart, float dstEnd) {
-        return dstStart + (dstEnd - dstStart) * (srcLocation - srcStart) / (srcEnd - srcStart);
-    }
+            stopCourtAnimation();
+            setCourtProgress(progress);
+            onCourtStateChanged();
+        }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        final Drawable court = mCourtDrawable;
-        if (court != null) {
-            final int saveCount = canvas.save();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
 
-            final float centerX = (getWidth() + getPaddingLeft() - getPaddingRight()) * .5F;
-            final float centerY = (getHeight() + getPaddingTop() - getPaddingBottom()) * .5F;
-            canvas.translate(centerX, centerY);
-            canvas.concat(mCameraHelper.getMatrix(mCurrentProgress, true));
+        endCourtGesture();
 
-            court.draw(canvas);
-            canvas.restoreToCount(saveCount);
+        // the decoder of a resource is opened again when attached.
+        mCourtTileSourceRequest++;
+        if (mCourtTiles != null) {
+            mCourtTiles.setDecoder(null);
         }
     }
 
@@ -438,14 +2433,17 @@ public class CourtView extends ViewGroup {
         if (mCourtDrawable != null) {
             DrawableCompat.setLayoutDirection(mCourtDrawable, layoutDirection);
         }
+
+        mMarkerLayer.setLayoutDirection(layoutDirection);
+        invalidate();
     }
 
     @Override
     protected void drawableStateChanged() {
         super.drawableStateChanged();
 
-        if (mCourtDrawable != null && mCourtDrawable.isStateful()) {
-            mCourtDrawable.setState(getDrawableState());
+        if (mCourtDrawable != null && mCourtDrawable.isStateful() && mCourtDrawable.setState(getDrawableState())) {
+            invalidateCourtMipmaps();
         }
     }
 
@@ -482,6 +2480,9 @@ public class CourtView extends ViewGroup {
                 mCourtDrawableHeight = h;
 
                 configureBounds();
+            } else {
+                // e.g. the tint or the color filter is changed.
+                invalidateCourtMipmaps();
             }
 
             invalidate();
@@ -496,6 +2497,11 @@ public class CourtView extends ViewGroup {
         final int vw = getWidth() - getPaddingLeft() - getPaddingRight();
         final int vh = getHeight() - getPaddingTop() - getPaddingBottom();
 
+        mCourtBoundsValid = true;
+        mCourtBoundsWidth = vw;
+        mCourtBoundsHeight = vh;
+        mLayoutMatrixValid = false;
+
         float scale;
         int dw = mCourtDrawableWidth;
         int dh = mCourtDrawableHeight;
@@ -522,23 +2528,186 @@ public class CourtView extends ViewGroup {
             mCourtDrawable.setBounds(bounds);
         }
 
+        prepareCourtMipmaps();
+        requestCourtDecode();
+
         bounds.left += (int) (mCourtDrawableInsetLeft * scale);
         bounds.top += (int) (mCourtDrawableInsetTop * scale);
         bounds.right -= (int) (mCourtDrawableInsetRight * scale);
         bounds.bottom -= (int) (mCourtDrawableInsetBottom * scale);
+
+        mMarkerLayer.setBounds(bounds);
+    }
+
+    /**
+     * Same as {@code getCourtMatrix(1F, false)}, but cached until the bounds or the camera are changed.
+     */
+    private Matrix getLayoutMatrix() {
+        if (!mLayoutMatrixValid) {
+            mLayoutMatrix.set(getCourtMatrix(1F, false));
+            mLayoutMatrix.getValues(mLayoutValues);
+            mLayoutMatrixValid = true;
+        }
+
+        return mLayoutMatrix;
+    }
+
+    /**
+     * Values of {@link #getLayoutMatrix()}, for {@link CourtProjector}.
+     */
+    private float[] getLayoutValues() {
+        getLayoutMatrix();
+        return mLayoutValues;
+    }
+
+    private Matrix getCourtMatrix(float progress, boolean updateState) {
+        final CourtMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.begin(CourtMetrics.SECTION_MATRIX);
+        }
+
+        final Matrix matrix = mCameraHelper.getMatrix(progress, updateState);
+
+        if (metrics != null) {
+            metrics.end(CourtMetrics.SECTION_MATRIX);
+        }
+
+        if (mCourtZoom != 1F || mCourtPanX != 0F || mCourtPanY != 0F) {
+            matrix.postScale(mCourtZoom, mCourtZoom);
+            matrix.postTranslate(mCourtPanX, mCourtPanY);
+        }
+
+        return matrix;
+    }
+
+    @Nullable
+    private BitmapDrawable getCourtLodDrawable() {
+        if (mCourtLodEnabled && mCourtDrawable instanceof BitmapDrawable) {
+            final BitmapDrawable drawable = (BitmapDrawable) mCourtDrawable;
+            if (CourtMipmaps.isSupported(drawable.getBitmap())) {
+                return drawable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Nothing is built until the bounds of the court are configured, see {@link CourtMipmaps#prepare}.
+     */
+    private void prepareCourtMipmaps() {
+        final BitmapDrawable drawable = getCourtLodDrawable();
+        if (drawable != null) {
+            final Rect bounds = drawable.getBounds();
+            mCourtMipmaps.prepare(drawable, bounds.width() / 4, bounds.height() / 4);
+        } else {
+            mCourtMipmaps.release();
+        }
+    }
+
+    /**
+     * Levels of the chain are baked with the tint and color filter of the drawable, but not with its alpha.
+     */
+    private void invalidateCourtMipmaps() {
+        if (mCourtMipmaps.isPrepared(mCourtDrawable) && !mCourtMipmaps.updateAlpha()) {
+            mCourtMipmaps.release();
+            prepareCourtMipmaps();
+        }
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     // Tools
     // -----------------------------------------------------------------------------------------------------------------
 
-    private class CourtAnimatorListener extends AnimatorListenerAdapter {
+    private class CourtGestureListener extends GestureDetector.SimpleOnGestureListener
+            implements ScaleGestureDetector.OnScaleGestureListener {
 
         @Override
-        public void onAnimationEnd(Animator animation) {
-            mCourtAnimator = null;
+        public boolean onDown(MotionEvent e) {
+            // touches out of the markers are left to the parent, unless the court can be zoomed.
+            return isCourtZoomActive() || (mOnMarkerClickListener != null && isMarkerAt(e.getX(), e.getY()));
+        }
 
-            onCourtStateChanged();
+        @Override
+        public boolean onSingleTapUp(MotionEvent e) {
+            // double taps zoom the court, clicks are confirmed later.
+            return !isCourtZoomActive() && performMarkerClick(e.getX(), e.getY());
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            return isCourtZoomActive() && performMarkerClick(e.getX(), e.getY());
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            if (!isCourtZoomActive()) {
+                return false;
+            }
+
+            setCourtPan(mCourtPanX - distanceX, mCourtPanY - distanceY, false);
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            if (!isCourtZoomActive()) {
+                return false;
+            }
+
+            if (mCourtZoom > 1F) {
+                resetCourtZoom();
+            } else {
+                setCourtZoom(Math.max(2F, mCourtMaxZoom * .5F), e.getX(), e.getY());
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            setCourtZoom(mCourtZoom * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+
+        @Override
+        public void onScaleEnd(ScaleGestureDetector detector) {
+        }
+    }
+
+    private class MarkerDatasetObserver implements CourtDataset.Observer {
+
+        @Override
+        public void onChanged(CourtDataset dataset) {
+            mMarkerLayer.setMarkers(dataset);
+            invalidate();
+        }
+
+        @Override
+        public void onAppended(CourtDataset dataset, int start, int count) {
+            mMarkerLayer.appendMarkers(dataset, start, count);
+            invalidate();
+        }
+
+        @Override
+        public void onAttributesChanged(CourtDataset dataset, int start, int count) {
+            mMarkerLayer.updateMarkers(dataset, start, count);
+            invalidate();
+        }
+
+        @Override
+        public void onLocationsChanged(CourtDataset dataset, int start, int count) {
+            final CourtMarkerLayer layer = mMarkerLayer;
+            for (int index = start, end = start + count; index < end; index++) {
+                layer.setMarker(index, dataset.getFractionX(index), dataset.getFractionY(index));
+            }
+
+            invalidate();
         }
     }
 
@@ -561,99 +2730,99 @@ public class CourtView extends ViewGroup {
 
     private static class CameraHelper {
 
-        private final float[] mTmpPoint = new float[2];
+        private final float[] mTmpValues = new float[CourtCamera.MATRIX_SIZE];
+        private final float[] mTmpState = new float[CourtCamera.STATE_SIZE];
 
-        private final Camera mTmpCamera = new Camera();
         private final Matrix mTmpMatrix = new Matrix();
 
         private final CameraState mCameraState = new CameraState();
 
-        private final int mDefaultCameraDistance;
+        private final CourtProjector mProjector;
 
-        private int mHeight;
-        private float mScaleX;
-        private float mScaleY;
+        // measured once per process.
+        private static int sCameraLocation;
 
         CameraHelper() {
-            mDefaultCameraDistance = getDefaultCameraDistance();
+            mProjector = new CourtProjector(new CourtCamera(getCameraLocation()));
+        }
+
+        /**
+         * Distance from the {@link Camera} to the court plane in pixels, {@link CourtCamera#DEFAULT_CAMERA_LOCATION}
+         * on most devices, the {@code cameraLocation} of {@link CourtCamera}.
+         */
+        private static int getCameraLocation() {
+            if (sCameraLocation == 0) {
+                sCameraLocation = measureCameraLocation();
+            }
+
+            return sCameraLocation;
         }
 
-        private int getDefaultCameraDistance() {
+        /**
+         * A point at y of a plane translated by z is projected to {@code y * l / (z + l)}, solved for l.
+         */
+        private static int measureCameraLocation() {
             final float sz = 100F;
             final float sy = 100F;
 
-            final Camera camera = mTmpCamera;
-            final Matrix matrix = mTmpMatrix;
+            final Camera camera = new Camera();
+            final Matrix matrix = new Matrix();
 
             camera.save();
             camera.translate(0F, 0F, sz);
             camera.getMatrix(matrix);
             camera.restore();
 
-            return Math.round(sz / (sy / mapPoint(matrix, 0F, sy)[1] - 1F));
+            final float[] point = {0F, sy};
+            matrix.mapPoints(point);
+
+            return Math.round(sz / (sy / point[1] - 1F));
+        }
+
+        CourtCamera getCamera() {
+            return mProjector.getCamera();
+        }
+
+        void setTrajectory(@Nullable CourtTrajectory trajectory) {
+            mProjector.setTrajectory(trajectory);
+        }
+
+        @Nullable
+        CourtTrajectory getTrajectory() {
+            return mProjector.getTrajectory();
         }
 
         void setHeight(int height) {
-            mHeight = height;
+            mProjector.setHeight(height);
         }
 
         void setScaleX(float scaleX) {
-            mScaleX = scaleX;
+            mProjector.setScaleX(scaleX);
         }
 
         float getScaleX() {
-            return mScaleX;
+            return mProjector.getScaleX();
         }
 
         void setScaleY(float scaleY) {
-            mScaleY = scaleY;
+            mProjector.setScaleY(scaleY);
         }
 
         float getScaleY() {
-            return mScaleY;
+            return mProjector.getScaleY();
         }
 
         Matrix getMatrix(float progress, boolean updateState) {
-            final Matrix matrix = mTmpMatrix;
-
-            final float d = mDefaultCameraDistance;
-            final float h = mHeight;
-
-            final float sz = d / mScaleX - d;
-            final float ez = sz * (1F - progress);
-
-            final float cy = .5F * ((float) Math.sqrt(h * h - sz * sz) - mScaleY * h) * progress;
-            final float ch = .5F * (float) Math.sqrt(h * h - sz * sz * progress * progress);
-
-            final float sy = cy + ch;
-            final float ey = cy - ch;
-
-            final float rotate = (float) (Math.asin((sz - ez) / h) * 180D / Math.PI);
-            final float offset = (2F * d * d * cy + d * (sz * ey + ez * sy)) / (d * (sz + ez) + sz * ez);
+            final float[] values = mTmpValues;
+            final float[] state = updateState ? mTmpState : null;
 
-            final float ty = .5F * h * (cy + offset) / ch;
-            final float tz = .5F * (ez * (sy + offset) - sz * (ey + offset)) / ch;
+            mProjector.getMatrix(progress, values, state);
 
-            // get matrix.
-            final Camera camera = mTmpCamera;
-            camera.save();
-            camera.translate(0F, 0F, tz);
-            camera.rotateX(rotate);
-            camera.getMatrix(matrix);
-            camera.restore();
-
-            matrix.preTranslate(0F, -ty);
-            matrix.postTranslate(0F, offset);
+            final Matrix matrix = mTmpMatrix;
+            matrix.setValues(values);
 
-            if (updateState) {
-                final CameraState state = mCameraState;
-                state.ready = true;
-                state.cameraY = -offset;
-                state.cameraZ = -d;
-                state.courtStartY = sy;
-                state.courtStartZ = sz;
-                state.courtEndY = ey;
-                state.courtEndZ = ez;
+            if (state != null) {
+                mCameraState.set(state);
             }
 
             return matrix;
@@ -662,15 +2831,6 @@ public class CourtView extends ViewGroup {
         CameraState getCameraState() {
             return mCameraState;
         }
-
-        float[] mapPoint(Matrix matrix, float x, float y) {
-            final float[] point = mTmpPoint;
-            point[0] = x;
-            point[1] = y;
-            matrix.mapPoints(point);
-
-            return point;
-        }
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -686,6 +2846,16 @@ public class CourtView extends ViewGroup {
 
         public float courtEndY;
         public float courtEndZ;
+
+        void set(float[] state) {
+            ready = true;
+            cameraY = state[CourtCamera.STATE_CAMERA_Y];
+            cameraZ = state[CourtCamera.STATE_CAMERA_Z];
+            courtStartY = state[CourtCamera.STATE_COURT_START_Y];
+            courtStartZ = state[CourtCamera.STATE_COURT_START_Z];
+            courtEndY = state[CourtCamera.STATE_COURT_END_Y];
+            courtEndZ = state[CourtCamera.STATE_COURT_END_Z];
+        }
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -704,6 +2874,18 @@ public class CourtView extends ViewGroup {
         public float viewportRight;
         public float viewportBottom;
 
+        int mPosition = -1;
+        int mViewType;
+        long mItemId = -1L;
+
+        // location of the last layout.
+        private float mLaidOutX = Float.NaN;
+        private float mLaidOutY = Float.NaN;
+        private float mLaidOutViewportLeft;
+        private float mLaidOutViewportTop;
+        private float mLaidOutViewportRight;
+        private float mLaidOutViewportBottom;
+
         @SuppressWarnings("WeakerAccess")
         public LayoutParams(Context context, AttributeSet attrs) {
             super(context, attrs);
@@ -718,12 +2900,43 @@ public class CourtView extends ViewGroup {
         public LayoutParams(ViewGroup.LayoutParams source) {
             super(source);
         }
+
+        boolean isLocationChanged() {
+            return x != mLaidOutX || y != mLaidOutY
+                    || viewportLeft != mLaidOutViewportLeft || viewportTop != mLaidOutViewportTop
+                    || viewportRight != mLaidOutViewportRight || viewportBottom != mLaidOutViewportBottom;
+        }
+
+        void onLocationLaidOut() {
+            mLaidOutX = x;
+            mLaidOutY = y;
+            mLaidOutViewportLeft = viewportLeft;
+            mLaidOutViewportTop = viewportTop;
+            mLaidOutViewportRight = viewportRight;
+            mLaidOutViewportBottom = viewportBottom;
+        }
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     // Listeners
     // -----------------------------------------------------------------------------------------------------------------
 
+    public interface MarkerAdapter extends Adapter {
+
+        /**
+         * Fills x, y and the viewport of the item into the given {@link LayoutParams}, so that markers out of the
+         * view can be skipped without getting their views.
+         */
+        void getItemLocation(int position, LayoutParams outLocation);
+    }
+
+    public interface OnMarkerClickListener {
+
+        void onMarkerClick(CourtView court, int position);
+
+        void onMarkerLayerClick(CourtView court, int index);
+    }
+
     public interface OnCourtStateChangedListener {
 
         void onCourtStateChanged(CourtView court);
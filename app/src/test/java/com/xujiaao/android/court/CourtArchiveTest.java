@@ -0,0 +1,129 @@
+package com.xujiaao.android.court;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+
+public class CourtArchiveTest {
+
+    // offsets of the header and of the first entry.
+    private static final int MAGIC_OFFSET = 0;
+    private static final int COUNT_OFFSET = 8;
+    private static final int OFFSET_OFFSET = 12 + 16;
+    private static final int LENGTH_OFFSET = OFFSET_OFFSET + 4;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("court", ".court");
+
+        new CourtArchive.Writer()
+                .add("DAL", new byte[]{1, 2, 3}, 940, 500, 10, 20, 30, 40)
+                .add("GSW", new byte[]{4, 5}, 470, 250, 1, 2, 3, 4)
+                .write(mFile);
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    /**
+     * Writes a little endian int into the archive.
+     */
+    private void patch(int position, int value) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.seek(position);
+            raf.writeInt(Integer.reverseBytes(value));
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void entriesAreRead() throws IOException {
+        final CourtArchive archive = CourtArchive.open(mFile);
+        try {
+            assertEquals(2, archive.getEntryCount());
+            assertEquals(1, archive.indexOf("GSW"));
+            assertEquals(-1, archive.indexOf("LAL"));
+            assertEquals("DAL", archive.getName(0));
+            assertEquals(940, archive.getWidth(0));
+            assertEquals(500, archive.getHeight(0));
+            assertEquals(10, archive.getInsetLeft(0));
+            assertEquals(20, archive.getInsetTop(0));
+            assertEquals(30, archive.getInsetRight(0));
+            assertEquals(40, archive.getInsetBottom(0));
+            assertEquals(4, archive.getInsetBottom(1));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invalidEntriesAreRejected() throws IOException {
+        final CourtArchive archive = CourtArchive.open(mFile);
+        try {
+            archive.getWidth(2);
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        patch(MAGIC_OFFSET, 0x474E5089);
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyFilesAreRejected() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.setLength(0L);
+        } finally {
+            raf.close();
+        }
+
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedIndexesAreRejected() throws IOException {
+        patch(COUNT_OFFSET, 1000);
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeCountsAreRejected() throws IOException {
+        patch(COUNT_OFFSET, -1);
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeOffsetsAreRejected() throws IOException {
+        patch(OFFSET_OFFSET, -1);
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeLengthsAreRejected() throws IOException {
+        patch(LENGTH_OFFSET, -1);
+        CourtArchive.open(mFile).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void floorsOutOfTheFileAreRejected() throws IOException {
+        patch(LENGTH_OFFSET, Integer.MAX_VALUE);
+        CourtArchive.open(mFile).close();
+    }
+}
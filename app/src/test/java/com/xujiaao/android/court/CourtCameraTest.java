@@ -0,0 +1,101 @@
+package com.xujiaao.android.court;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CourtCameraTest {
+
+    private static final float DELTA = 1E-3F;
+
+    /**
+     * Same as SkCamera3D: the plane is rotated around the x axis, so that its top goes away when the angle is
+     * positive, moved by tz, and projected by a camera at (0, 0, -location).
+     */
+    private static float[] project(float location, float tz, float rotate, float x, float y) {
+        final double radians = rotate * Math.PI / 180D;
+        final double z = tz - y * Math.sin(radians);
+        final double scale = location / (z + location);
+
+        return new float[]{(float) (x * scale), (float) (y * Math.cos(radians) * scale)};
+    }
+
+    @Test
+    public void cameraMatrixMatchesSkia() {
+        final CourtCamera camera = new CourtCamera();
+        final float[] matrix = new float[CourtCamera.MATRIX_SIZE];
+
+        for (float tz : new float[]{-100F, 0F, 250F, 1000F}) {
+            for (float rotate : new float[]{0F, 15F, 45F, 80F}) {
+                camera.getCameraMatrix(tz, rotate, matrix);
+
+                for (float y = -300F; y <= 300F; y += 150F) {
+                    final float[] expected = project(CourtCamera.DEFAULT_CAMERA_LOCATION, tz, rotate, 120F, y);
+                    assertEquals(expected[0], CourtCamera.mapX(matrix, 120F, y), DELTA);
+                    assertEquals(expected[1], CourtCamera.mapY(matrix, 120F, y), DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cameraDistanceIsTheCameraLocation() {
+        assertEquals(Math.round(CourtCamera.DEFAULT_CAMERA_LOCATION), new CourtCamera().getCameraDistance());
+        assertEquals(800, new CourtCamera(800F).getCameraDistance());
+    }
+
+    @Test
+    public void collapsedCourtIsScaled() {
+        final CourtCamera camera = new CourtCamera();
+        final float[] matrix = camera.getMatrix(0F, 1000, .7F, .6F, new float[CourtCamera.MATRIX_SIZE]);
+
+        assertEquals(.7F * 200F, CourtCamera.mapX(matrix, 200F, 300F), DELTA);
+        assertEquals(.7F * 300F, CourtCamera.mapY(matrix, 200F, 300F), DELTA);
+    }
+
+    @Test
+    public void expandedCourtEndsOnTheScreen() {
+        final CourtCamera camera = new CourtCamera();
+        final float[] state = new float[CourtCamera.STATE_SIZE];
+        camera.getMatrix(1F, 1000, .7F, .6F, new float[CourtCamera.MATRIX_SIZE], state);
+
+        assertEquals(0F, state[CourtCamera.STATE_COURT_END_Z], DELTA);
+        assertEquals(camera.getMinHeight(.7F), state[CourtCamera.STATE_COURT_START_Z], DELTA);
+        assertEquals(-camera.getCameraDistance(), state[CourtCamera.STATE_CAMERA_Z], DELTA);
+    }
+
+    @Test
+    public void matricesAreFiniteFromTheMinHeight() {
+        final CourtCamera camera = new CourtCamera();
+        final float[] matrix = new float[CourtCamera.MATRIX_SIZE];
+        final int minHeight = (int) Math.ceil(camera.getMinHeight(.7F));
+
+        for (float progress = 0F; progress <= 1F; progress += .25F) {
+            camera.getMatrix(progress, minHeight, .7F, .6F, matrix);
+            for (float value : matrix) {
+                assertFalse(Float.isNaN(value) || Float.isInfinite(value));
+            }
+        }
+
+        camera.getMatrix(.5F, minHeight / 2, .7F, .6F, matrix);
+        assertTrue(Float.isNaN(matrix[CourtCamera.MSCALE_Y]));
+    }
+
+    @Test
+    public void mapPointsMatchesMapXY() {
+        final float[] matrix = new CourtCamera().getMatrix(.5F, 1000, .7F, .6F, new float[CourtCamera.MATRIX_SIZE]);
+        final float[] points = {-300F, -400F, 0F, 0F, 250F, 380F};
+        final float[] mapped = new float[points.length];
+
+        CourtCamera.mapPoints(matrix, mapped, 0, points, 0, 3);
+
+        for (int index = 0; index < 3; index++) {
+            final float x = points[index * 2];
+            final float y = points[index * 2 + 1];
+            assertEquals(CourtCamera.mapX(matrix, x, y), mapped[index * 2], DELTA);
+            assertEquals(CourtCamera.mapY(matrix, x, y), mapped[index * 2 + 1], DELTA);
+        }
+    }
+}
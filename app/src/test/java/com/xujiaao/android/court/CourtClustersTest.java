@@ -0,0 +1,115 @@
+package com.xujiaao.android.court;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CourtClustersTest {
+
+    private static final int COUNT = 300;
+
+    private static int getCell(int level, float x, float y) {
+        final int size = 1 << level;
+        final int col = Math.max(0, Math.min((int) (x * size), size - 1));
+        final int row = Math.max(0, Math.min((int) (y * size), size - 1));
+        return row * size + col;
+    }
+
+    /**
+     * Compares every cell of every level with the clusters computed from the points.
+     */
+    private static void assertClusters(CourtClusters clusters, float[] points, boolean[] removed) {
+        for (int level = 0; level < CourtClusters.LEVEL_COUNT; level++) {
+            final int cellCount = CourtClusters.getCellCount(level);
+            final int[] counts = new int[cellCount];
+            final double[] sumXs = new double[cellCount];
+            final double[] sumYs = new double[cellCount];
+            final int[] members = new int[cellCount];
+
+            for (int id = 0; id < COUNT; id++) {
+                if (!removed[id]) {
+                    final int cell = getCell(level, points[id * 2], points[id * 2 + 1]);
+                    counts[cell]++;
+                    sumXs[cell] += points[id * 2];
+                    sumYs[cell] += points[id * 2 + 1];
+                    members[cell] = id;
+                }
+            }
+
+            for (int cell = 0; cell < cellCount; cell++) {
+                assertEquals(counts[cell], clusters.getCount(level, cell));
+
+                if (counts[cell] > 0) {
+                    assertEquals(sumXs[cell] / counts[cell], clusters.getCenterX(level, cell), 1E-4);
+                    assertEquals(sumYs[cell] / counts[cell], clusters.getCenterY(level, cell), 1E-4);
+                }
+
+                if (counts[cell] == 1) {
+                    assertEquals(members[cell], clusters.getMember(level, cell));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        final Random random = new Random(7L);
+        final CourtClusters clusters = new CourtClusters();
+
+        final float[] points = new float[COUNT * 2];
+        final boolean[] removed = new boolean[COUNT];
+
+        for (int id = 0; id < COUNT; id++) {
+            points[id * 2] = random.nextFloat();
+            points[id * 2 + 1] = random.nextFloat();
+            clusters.add(id, points[id * 2], points[id * 2 + 1]);
+        }
+
+        assertClusters(clusters, points, removed);
+
+        for (int step = 0; step < 2000; step++) {
+            final int id = random.nextInt(COUNT);
+            if (removed[id]) {
+                continue;
+            }
+
+            final float x = points[id * 2];
+            final float y = points[id * 2 + 1];
+
+            if (step % 10 == 0) {
+                removed[id] = true;
+                clusters.remove(id, x, y);
+            } else {
+                // small moves mostly stay in their cells.
+                points[id * 2] = Math.max(0F, Math.min(x + (random.nextFloat() - .5F) * .02F, 1F));
+                points[id * 2 + 1] = Math.max(0F, Math.min(y + (random.nextFloat() - .5F) * .02F, 1F));
+                clusters.move(id, x, y, points[id * 2], points[id * 2 + 1]);
+            }
+        }
+
+        assertClusters(clusters, points, removed);
+    }
+
+    @Test
+    public void pointsOutOfTheCourtAreKeptInTheEdgeCells() {
+        final CourtClusters clusters = new CourtClusters();
+        clusters.add(0, -.5F, 1.5F);
+
+        final int level = CourtClusters.LEVEL_COUNT - 1;
+        final int size = 1 << level;
+        assertEquals(1, clusters.getCount(level, (size - 1) * size));
+        assertEquals(0, clusters.getMember(level, (size - 1) * size));
+    }
+
+    @Test
+    public void clearRemovesAllThePoints() {
+        final CourtClusters clusters = new CourtClusters();
+        clusters.add(0, .2F, .3F);
+        clusters.add(1, .7F, .8F);
+        clusters.clear();
+
+        assertEquals(0, clusters.getCount(0, 0));
+    }
+}
@@ -0,0 +1,127 @@
+package com.xujiaao.android.court;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CourtDatasetTest {
+
+    private static class RecordingObserver implements CourtDataset.Observer {
+
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onChanged(CourtDataset dataset) {
+            mEvents.add("changed");
+        }
+
+        @Override
+        public void onLocationsChanged(CourtDataset dataset, int start, int count) {
+            mEvents.add("locations " + start + " " + count);
+        }
+
+        @Override
+        public void onAppended(CourtDataset dataset, int start, int count) {
+            mEvents.add("appended " + start + " " + count);
+        }
+
+        @Override
+        public void onAttributesChanged(CourtDataset dataset, int start, int count) {
+            mEvents.add("attributes " + start + " " + count);
+        }
+    }
+
+    private static CourtDataset createDataset(int count) {
+        final CourtDataset dataset = new CourtDataset(1);
+        for (int index = 0; index < count; index++) {
+            dataset.add(index, index * 10F, 0xFF000000 | index, index + 1F);
+        }
+
+        return dataset;
+    }
+
+    @Test
+    public void addGrowsTheCapacity() {
+        final CourtDataset dataset = createDataset(40);
+
+        assertEquals(40, dataset.size());
+        assertEquals(39F, dataset.getX(39), 0F);
+        assertEquals(390F, dataset.getY(39), 0F);
+        assertEquals(0xFF000000 | 39, dataset.getColor(39));
+        assertEquals(40F, dataset.getSize(39), 0F);
+    }
+
+    @Test
+    public void removeRangeMovesTheLaterMarkers() {
+        final CourtDataset dataset = createDataset(10);
+        dataset.setFlags(8, CourtDataset.FLAG_HIDDEN);
+        dataset.removeRange(2, 3);
+
+        assertEquals(7, dataset.size());
+        assertEquals(1F, dataset.getX(1), 0F);
+        assertEquals(5F, dataset.getX(2), 0F);
+        assertEquals(0xFF000000 | 9, dataset.getColor(6));
+        assertTrue(dataset.isHidden(5));
+        assertFalse(dataset.isHidden(4));
+    }
+
+    @Test
+    public void fractionsAreInTheViewport() {
+        final CourtDataset dataset = new CourtDataset();
+        dataset.setDefaultViewport(0F, 0F, 94F, 50F);
+        dataset.add(47F, 10F, 0, 1F);
+
+        assertEquals(.5F, dataset.getFractionX(0), 1E-6F);
+        assertEquals(.2F, dataset.getFractionY(0), 1E-6F);
+
+        dataset.setViewport(0, 47F, 0F, 47F, 100F);
+        assertEquals(0F, dataset.getFractionX(0), 0F);
+        assertEquals(.1F, dataset.getFractionY(0), 1E-6F);
+    }
+
+    @Test
+    public void observersAreNotifiedOncePerCall() {
+        final CourtDataset dataset = createDataset(4);
+        final RecordingObserver observer = new RecordingObserver();
+        dataset.registerObserver(observer);
+        dataset.registerObserver(observer);
+
+        dataset.addAll(new float[]{1F, 2F, 3F, 4F}, new int[]{1, 2}, new float[]{1F, 2F}, 2);
+        dataset.setLocations(1, new float[]{1F, 2F, 3F, 4F}, 2);
+        dataset.setColors(0, new int[]{1, 2, 3}, 3);
+        dataset.setFlags(2, 4, CourtDataset.FLAG_HIDDEN);
+        dataset.setColor(0, 1);
+        dataset.setSize(0, 5F);
+        dataset.remove(5);
+        dataset.clear();
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("appended 4 2");
+        expected.add("locations 1 2");
+        expected.add("attributes 0 3");
+        expected.add("attributes 2 4");
+        expected.add("attributes 0 1");
+        expected.add("changed");
+        expected.add("changed");
+        assertEquals(expected, observer.mEvents);
+
+        dataset.unregisterObserver(observer);
+        dataset.add(0F, 0F, 0, 1F);
+        assertEquals(expected.size(), observer.mEvents.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rangesOutOfTheDatasetAreRejected() {
+        createDataset(4).setFlags(2, 3, CourtDataset.FLAG_HIDDEN);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void negativeCountsAreRejected() {
+        createDataset(4).removeRange(2, -1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.xujiaao.android.court;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CourtSpatialIndexTest {
+
+    private static final int COUNT = 500;
+
+    private static float distance(float[] points, int id, float x, float y, float radiusX, float radiusY) {
+        final float dx = (points[id * 2] - x) / radiusX;
+        final float dy = (points[id * 2 + 1] - y) / radiusY;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @return the smallest distance in the ellipse, or 2 if there is none.
+     */
+    private static float findNearestDistance(float[] points, boolean[] removed,
+                                             float x, float y, float radiusX, float radiusY) {
+        float nearest = 2F;
+        for (int id = 0; id < COUNT; id++) {
+            if (!removed[id]) {
+                final float distance = distance(points, id, x, y, radiusX, radiusY);
+                if (distance <= 1F && distance < nearest) {
+                    nearest = distance;
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    @Test
+    public void findNearestMatchesBruteForce() {
+        final Random random = new Random(42L);
+        final CourtSpatialIndex index = new CourtSpatialIndex();
+        index.reset(COUNT);
+
+        final float[] points = new float[COUNT * 2];
+        final boolean[] removed = new boolean[COUNT];
+
+        for (int id = 0; id < COUNT; id++) {
+            points[id * 2] = random.nextFloat();
+            points[id * 2 + 1] = random.nextFloat();
+            index.set(id, points[id * 2], points[id * 2 + 1]);
+        }
+
+        // moves and removes some points.
+        for (int id = 0; id < COUNT; id += 3) {
+            points[id * 2] = random.nextFloat() * 1.2F - .1F;
+            points[id * 2 + 1] = random.nextFloat() * 1.2F - .1F;
+            index.set(id, points[id * 2], points[id * 2 + 1]);
+        }
+
+        for (int id = 1; id < COUNT; id += 7) {
+            removed[id] = true;
+            index.remove(id);
+        }
+
+        for (int query = 0; query < 1000; query++) {
+            final float x = random.nextFloat() * 1.2F - .1F;
+            final float y = random.nextFloat() * 1.2F - .1F;
+            final float radiusX = .005F + random.nextFloat() * .05F;
+            final float radiusY = .005F + random.nextFloat() * .05F;
+
+            final float expected = findNearestDistance(points, removed, x, y, radiusX, radiusY);
+            final int id = index.findNearest(x, y, radiusX, radiusY);
+
+            if (expected > 1F) {
+                assertEquals(-1, id);
+            } else {
+                assertTrue(id >= 0 && !removed[id]);
+                assertEquals(expected, distance(points, id, x, y, radiusX, radiusY), 0F);
+            }
+        }
+    }
+
+    @Test
+    public void resetRemovesAllThePoints() {
+        final CourtSpatialIndex index = new CourtSpatialIndex();
+        index.reset(4);
+        index.set(0, .5F, .5F);
+        assertEquals(0, index.findNearest(.5F, .5F, .1F, .1F));
+
+        index.reset(4);
+        assertEquals(-1, index.findNearest(.5F, .5F, .1F, .1F));
+    }
+
+    @Test
+    public void idsOutOfTheCapacityAreIgnored() {
+        final CourtSpatialIndex index = new CourtSpatialIndex();
+        index.reset(2);
+        index.set(2, .5F, .5F);
+        index.set(-1, .5F, .5F);
+
+        assertEquals(-1, index.findNearest(.5F, .5F, .1F, .1F));
+    }
+}
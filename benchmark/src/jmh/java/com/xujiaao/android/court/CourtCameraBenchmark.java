@@ -0,0 +1,68 @@
+package com.xujiaao.android.court;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camera math of {@link CourtView}, see {@link CourtCamera}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CourtCameraBenchmark {
+
+    private static final int HEIGHT = 1080;
+    private static final float SCALE_X = .7F;
+    private static final float SCALE_Y = .5F;
+
+    @Param({"0", "0.25", "0.5", "0.75", "1"})
+    public float progress;
+
+    private CourtCamera mCamera;
+
+    private final float[] mMatrix = new float[CourtCamera.MATRIX_SIZE];
+    private final float[] mState = new float[CourtCamera.STATE_SIZE];
+    private final float[] mPoint = new float[2];
+
+    @Setup
+    public void setup() {
+        mCamera = new CourtCamera();
+        mCamera.getMatrix(progress, HEIGHT, SCALE_X, SCALE_Y, mMatrix);
+    }
+
+    @Benchmark
+    public float[] getMatrix() {
+        return mCamera.getMatrix(progress, HEIGHT, SCALE_X, SCALE_Y, mMatrix);
+    }
+
+    @Benchmark
+    public float[] getMatrixWithState() {
+        return mCamera.getMatrix(progress, HEIGHT, SCALE_X, SCALE_Y, mMatrix, mState);
+    }
+
+    /**
+     * Calibration of the camera distance, done when a {@link CourtCamera} is created.
+     */
+    @Benchmark
+    public int getDefaultCameraDistance() {
+        return new CourtCamera().getCameraDistance();
+    }
+
+    @Benchmark
+    public float[] mapPoint() {
+        final float[] point = mPoint;
+        point[0] = 120F;
+        point[1] = -240F;
+
+        CourtCamera.mapPoints(mMatrix, point, 0, point, 0, 1);
+        return point;
+    }
+}
@@ -0,0 +1,138 @@
+package com.xujiaao.android.court;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Court math of the layout pass of {@link CourtView}, through the same {@link CourtProjector} as the view: matrices
+ * interpolated from the keyframes, locations of the children projected to anchors, and markers culled by the view
+ * bounds. Measuring and laying out the child views themselves needs a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CourtLayoutBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    private static final int COURT_WIDTH = 1880;
+    private static final int COURT_HEIGHT = 1000;
+
+    private static final int MAX_CHILD_COUNT = 256;
+    private static final int MAX_CHILD_EXTENT = 48;
+
+    @Param({"10", "1000", "10000"})
+    public int childCount;
+
+    private final CourtProjector mProjector = new CourtProjector(new CourtCamera());
+    private final float[] mMatrix = new float[CourtCamera.MATRIX_SIZE];
+    private final float[] mState = new float[CourtCamera.STATE_SIZE];
+
+    private final CourtSpatialIndex mIndex = new CourtSpatialIndex();
+
+    private float[] mLocations;
+    private float[] mPoints;
+    private float[] mAnchors;
+    private int[] mPositions;
+
+    private int mHeight = COURT_HEIGHT;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(0L);
+
+        mLocations = new float[childCount * 2];
+        for (int index = 0; index < mLocations.length; index++) {
+            mLocations[index] = random.nextFloat();
+        }
+
+        mPoints = new float[childCount * 2];
+        mAnchors = new float[childCount * 2];
+        mPositions = new int[MAX_CHILD_COUNT];
+
+        mProjector.setHeight(COURT_HEIGHT);
+        mProjector.setScaleX(.7F);
+        mProjector.setScaleY(.5F);
+        mProjector.getMatrix(1F, mMatrix, null);
+    }
+
+    /**
+     * Matrix of a frame of the transition, interpolated from the keyframes.
+     */
+    @Benchmark
+    public float[] frameMatrix() {
+        mProjector.getMatrix(.37F, mMatrix, mState);
+        return mMatrix;
+    }
+
+    /**
+     * Keyframes baked again, e.g. after the court is resized.
+     */
+    @Benchmark
+    public float[] bakeKeyframes() {
+        mHeight = mHeight == COURT_HEIGHT ? COURT_HEIGHT + 1 : COURT_HEIGHT;
+        mProjector.setHeight(mHeight);
+        mProjector.getMatrix(1F, mMatrix, null);
+        return mMatrix;
+    }
+
+    private void mapLocations() {
+        final float[] locations = mLocations;
+        final float[] points = mPoints;
+
+        final float left = -COURT_WIDTH / 2;
+        final float top = -COURT_HEIGHT / 2;
+
+        for (int index = 0, length = childCount * 2; index < length; index += 2) {
+            points[index] = CourtProjector.mapLocation(locations[index], 0F, 1F, left, left + COURT_WIDTH);
+            points[index + 1] = CourtProjector.mapLocation(locations[index + 1], 0F, 1F, top, top + COURT_HEIGHT);
+        }
+    }
+
+    /**
+     * Anchors of the children, same as {@code CourtView#onLayout}.
+     */
+    @Benchmark
+    public float[] layout() {
+        mapLocations();
+        CourtProjector.mapAnchors(mMatrix, mPoints, mAnchors, 0, childCount);
+        return mAnchors;
+    }
+
+    /**
+     * Visible markers, same as {@code CourtView#findVisiblePositions}.
+     */
+    @Benchmark
+    public int cullVisible() {
+        mapLocations();
+        return CourtProjector.findVisible(mMatrix, mPoints, childCount,
+                -WIDTH / 2 - MAX_CHILD_EXTENT, -HEIGHT / 2 - MAX_CHILD_EXTENT,
+                WIDTH / 2 + MAX_CHILD_EXTENT, HEIGHT / 2 + MAX_CHILD_EXTENT, mPositions, MAX_CHILD_COUNT);
+    }
+
+    /**
+     * Same as a data set change followed by a layout and a tap: the index of the markers is rebuilt.
+     */
+    @Benchmark
+    public int dataSetChanged() {
+        final CourtSpatialIndex index = mIndex;
+        final float[] locations = mLocations;
+
+        index.reset(childCount);
+        for (int position = 0; position < childCount; position++) {
+            index.set(position, locations[position * 2], locations[position * 2 + 1]);
+        }
+
+        return cullVisible() + index.findNearest(.5F, .5F, .02F, .02F);
+    }
+}
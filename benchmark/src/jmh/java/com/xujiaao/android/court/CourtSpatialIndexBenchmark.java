@@ -0,0 +1,58 @@
+package com.xujiaao.android.court;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit-testing of markers, see {@link CourtSpatialIndex}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CourtSpatialIndexBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int markerCount;
+
+    private final CourtSpatialIndex mIndex = new CourtSpatialIndex();
+    private final float[] mQueries = new float[QUERY_COUNT * 2];
+
+    private int mQuery;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(0L);
+
+        mIndex.reset(markerCount);
+        for (int id = 0; id < markerCount; id++) {
+            mIndex.set(id, random.nextFloat(), random.nextFloat());
+        }
+
+        for (int index = 0; index < mQueries.length; index++) {
+            mQueries[index] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public int findNearest() {
+        final int query = mQuery = (mQuery + 1) & (QUERY_COUNT - 1);
+        return mIndex.findNearest(mQueries[query * 2], mQueries[query * 2 + 1], .02F, .02F);
+    }
+
+    @Benchmark
+    public void move() {
+        final int query = mQuery = (mQuery + 1) & (QUERY_COUNT - 1);
+        mIndex.set(query % markerCount, mQueries[query * 2], mQueries[query * 2 + 1]);
+    }
+}
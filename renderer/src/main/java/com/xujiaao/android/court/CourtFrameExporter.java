@@ -0,0 +1,158 @@
+package com.xujiaao.android.court;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the expand animation of the court (progress 0 to 1, accelerated then decelerated like
+ * {@code CourtView#setExpanded(boolean, boolean)}) as an animated GIF.
+ * <p>
+ * Frames are rendered and encoded in parallel, every worker with its own renderer and buffer, then written in order.
+ * At most {@link #setMaxPendingFrames(int)} frames are in memory at once, whatever the frame count is.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtFrameExporter {
+
+    public static final int DEFAULT_FRAME_COUNT = 90;
+    public static final int DEFAULT_FRAME_DELAY = 33;
+
+    private final CourtRenderer mRenderer;
+    private final CourtRenderer.Floor mFloor;
+    private final int mWidth;
+    private final int mHeight;
+
+    private int mFrameCount = DEFAULT_FRAME_COUNT;
+    private int mFrameDelay = DEFAULT_FRAME_DELAY;
+    private int mThreadCount = Runtime.getRuntime().availableProcessors();
+    private int mMaxPendingFrames = mThreadCount * 2;
+
+    /**
+     * @param renderer camera, floor layout and markers of the frames, copied for the workers when exporting.
+     * @param floor    nullable.
+     */
+    public CourtFrameExporter(CourtRenderer renderer, CourtRenderer.Floor floor, int width, int height)
+            throws IllegalArgumentException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size MUST > 0.");
+        }
+
+        mRenderer = renderer;
+        mFloor = floor;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public void setFrameCount(int frameCount) throws IllegalArgumentException {
+        if (frameCount < 2) {
+            throw new IllegalArgumentException("Frame count MUST be at least 2.");
+        }
+
+        mFrameCount = frameCount;
+    }
+
+    /**
+     * @param delay delay of every frame in milliseconds. GIF stores delays in 10 milliseconds, the rounding errors are
+     *              carried to the next frames, so that the duration of the animation is kept.
+     */
+    public void setFrameDelay(int delay) throws IllegalArgumentException {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Frame delay MUST >= 0.");
+        }
+
+        mFrameDelay = delay;
+    }
+
+    public void setThreadCount(int threadCount) {
+        mThreadCount = Math.max(threadCount, 1);
+    }
+
+    public void setMaxPendingFrames(int maxPendingFrames) {
+        mMaxPendingFrames = Math.max(maxPendingFrames, 1);
+    }
+
+    /**
+     * Progress of the given frame, same as {@code AccelerateDecelerateInterpolator}.
+     */
+    public static float getProgress(int frame, int frameCount) {
+        final float input = (float) frame / (frameCount - 1);
+        return (float) (Math.cos((input + 1F) * Math.PI) / 2F) + .5F;
+    }
+
+    /**
+     * Exports the animation, blocks until all the frames are written. The stream is not closed.
+     */
+    public void export(OutputStream out) throws IOException, InterruptedException {
+        final CourtGifEncoder encoder = new CourtGifEncoder(out, mWidth, mHeight, 0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(mThreadCount);
+        final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+
+            @Override
+            protected Worker initialValue() {
+                return new Worker(mRenderer.copy(null), new int[mWidth * mHeight]);
+            }
+        };
+
+        final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+        try {
+            for (int frame = 0; frame < mFrameCount; frame++) {
+                if (pending.size() >= mMaxPendingFrames) {
+                    encoder.writeFrame(await(pending.poll()));
+                }
+
+                final float progress = getProgress(frame, mFrameCount);
+                final int delay = CourtGifEncoder.getFrameDelay(frame, mFrameDelay);
+                pending.add(executor.submit(new Callable<byte[]>() {
+
+                    @Override
+                    public byte[] call() throws Exception {
+                        return workers.get().render(mFloor, progress, mWidth, mHeight, delay);
+                    }
+                }));
+            }
+
+            while (!pending.isEmpty()) {
+                encoder.writeFrame(await(pending.poll()));
+            }
+
+            encoder.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render a frame.", e.getCause());
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Worker
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static class Worker {
+
+        private final CourtRenderer mRenderer;
+        private final int[] mPixels;
+
+        Worker(CourtRenderer renderer, int[] pixels) {
+            mRenderer = renderer;
+            mPixels = pixels;
+        }
+
+        byte[] render(CourtRenderer.Floor floor, float progress, int width, int height, int delay) {
+            mRenderer.render(floor, progress, width, height, mPixels);
+            return CourtGifEncoder.encodeFrame(mPixels, width, height, delay);
+        }
+    }
+}
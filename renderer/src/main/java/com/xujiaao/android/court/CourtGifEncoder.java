@@ -0,0 +1,334 @@
+package com.xujiaao.android.court;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming animated GIF encoder. Frames are encoded independently ({@link #encodeFrame(int[], int, int, int)} is
+ * safe to be called on any thread), every frame with its own color table, and written in order.
+ */
+final class CourtGifEncoder {
+
+    private static final int MAX_SIZE = 0xFFFF;
+    private static final int MAX_COLOR_COUNT = 256;
+
+    // RGB 555 histogram.
+    private static final int BIN_COUNT = 1 << 15;
+
+    private static final int MAX_CODE_SIZE = 12;
+    private static final int MAX_CODE_COUNT = 1 << MAX_CODE_SIZE;
+    private static final int HASH_SIZE = 5003;
+
+    private final OutputStream mOut;
+
+    /**
+     * Writes the header of the animation.
+     *
+     * @param loopCount 0 for infinite.
+     */
+    CourtGifEncoder(OutputStream out, int width, int height, int loopCount)
+            throws IOException, IllegalArgumentException {
+        checkSize(width, height);
+
+        mOut = out;
+
+        out.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+
+        // logical screen descriptor, without global color table.
+        writeShort(out, width);
+        writeShort(out, height);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+
+        // NETSCAPE2.0 application extension.
+        out.write(new byte[]{0x21, (byte) 0xFF, 11, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 3, 1});
+        writeShort(out, loopCount);
+        out.write(0);
+    }
+
+    void writeFrame(byte[] frame) throws IOException {
+        mOut.write(frame);
+    }
+
+    void finish() throws IOException {
+        mOut.write(0x3B);
+        mOut.flush();
+    }
+
+    private static void checkSize(int width, int height) throws IllegalArgumentException {
+        if (width <= 0 || height <= 0 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Size MUST be in range [1, " + MAX_SIZE + "]: " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Delay of a frame in 10 milliseconds, rounding errors are carried to the next frames, e.g. frames of 33
+     * milliseconds are stored as 30, 40, 30, 30, 40, ... instead of 30 each.
+     *
+     * @param delay delay of every frame in milliseconds.
+     */
+    static int getFrameDelay(int frame, int delay) {
+        return ((frame + 1) * delay + 5) / 10 - (frame * delay + 5) / 10;
+    }
+
+    /**
+     * Quantizes and compresses an opaque frame, the alpha of the pixels is ignored.
+     *
+     * @param delay delay of the frame in 10 milliseconds, see {@link #getFrameDelay(int, int)}.
+     */
+    static byte[] encodeFrame(int[] pixels, int width, int height, int delay) throws IllegalArgumentException {
+        checkSize(width, height);
+
+        final int count = width * height;
+        if (pixels.length < count) {
+            throw new IllegalArgumentException("Frame MUST have " + count + " pixels: " + pixels.length);
+        }
+
+        final int[] palette = new int[MAX_COLOR_COUNT];
+        final int[] lookup = buildPalette(pixels, count, palette);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(count / 2 + 1024);
+
+        try {
+            // graphic control extension.
+            out.write(new byte[]{0x21, (byte) 0xF9, 4, 4 /* do not dispose */});
+            writeShort(out, delay);
+            out.write(0);
+            out.write(0);
+
+            // image descriptor, with a local color table of 256 colors.
+            out.write(0x2C);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, width);
+            writeShort(out, height);
+            out.write(0x80 | 7);
+
+            for (int color : palette) {
+                out.write(color >> 16);
+                out.write(color >> 8);
+                out.write(color);
+            }
+
+            compress(pixels, count, lookup, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Quantization
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static int bin(int color) {
+        return ((color >> 9) & 0x7C00) | ((color >> 6) & 0x03E0) | ((color >> 3) & 0x001F);
+    }
+
+    /**
+     * Popularity quantization: the most used bins of the histogram are the palette, the other bins are mapped to the
+     * nearest color of the palette.
+     *
+     * @return index of the palette of every bin.
+     */
+    private static int[] buildPalette(int[] pixels, int count, int[] palette) {
+        final int[] counts = new int[BIN_COUNT];
+        final long[] sums = new long[BIN_COUNT * 3];
+
+        for (int index = 0; index < count; index++) {
+            final int color = pixels[index];
+            final int bin = bin(color);
+
+            counts[bin]++;
+            sums[bin * 3] += (color >> 16) & 0xFF;
+            sums[bin * 3 + 1] += (color >> 8) & 0xFF;
+            sums[bin * 3 + 2] += color & 0xFF;
+        }
+
+        // bins sorted by count, most used first.
+        int used = 0;
+        final long[] bins = new long[BIN_COUNT];
+        for (int bin = 0; bin < BIN_COUNT; bin++) {
+            if (counts[bin] > 0) {
+                bins[used++] = ((long) -counts[bin] << 16) | bin;
+            }
+        }
+
+        Arrays.sort(bins, 0, used);
+
+        final int[] lookup = new int[BIN_COUNT];
+        Arrays.fill(lookup, -1);
+
+        final int colorCount = Math.min(used, MAX_COLOR_COUNT);
+        for (int index = 0; index < colorCount; index++) {
+            final int bin = (int) (bins[index] & 0xFFFF);
+            final int n = counts[bin];
+
+            palette[index] = (int) ((sums[bin * 3] / n) << 16 | (sums[bin * 3 + 1] / n) << 8 | sums[bin * 3 + 2] / n);
+            lookup[bin] = index;
+        }
+
+        for (int index = colorCount; index < used; index++) {
+            final int bin = (int) (bins[index] & 0xFFFF);
+            final int n = counts[bin];
+
+            lookup[bin] = findNearest(palette, colorCount,
+                    (int) (sums[bin * 3] / n), (int) (sums[bin * 3 + 1] / n), (int) (sums[bin * 3 + 2] / n));
+        }
+
+        return lookup;
+    }
+
+    private static int findNearest(int[] palette, int colorCount, int r, int g, int b) {
+        int nearest = 0;
+        int min = Integer.MAX_VALUE;
+
+        for (int index = 0; index < colorCount; index++) {
+            final int color = palette[index];
+            final int dr = ((color >> 16) & 0xFF) - r;
+            final int dg = ((color >> 8) & 0xFF) - g;
+            final int db = (color & 0xFF) - b;
+
+            final int distance = dr * dr + dg * dg + db * db;
+            if (distance < min) {
+                min = distance;
+                nearest = index;
+            }
+        }
+
+        return nearest;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // LZW
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static void compress(int[] pixels, int count, int[] lookup, ByteArrayOutputStream out) {
+        final int minCodeSize = 8;
+        final int clearCode = 1 << minCodeSize;
+        final int endCode = clearCode + 1;
+
+        out.write(minCodeSize);
+
+        final BitWriter writer = new BitWriter(out);
+
+        final int[] keys = new int[HASH_SIZE];
+        final int[] codes = new int[HASH_SIZE];
+        Arrays.fill(keys, -1);
+
+        int codeSize = minCodeSize + 1;
+        int next = endCode + 1;
+
+        writer.write(clearCode, codeSize);
+
+        int prefix = lookup[bin(pixels[0])];
+        for (int index = 1; index < count; index++) {
+            final int c = lookup[bin(pixels[index])];
+            final int key = (prefix << 8) | c;
+
+            // open addressing, double hashing.
+            int slot = ((c << 4) ^ prefix) % HASH_SIZE;
+            final int step = slot == 0 ? 1 : HASH_SIZE - slot;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot -= step;
+                if (slot < 0) {
+                    slot += HASH_SIZE;
+                }
+            }
+
+            if (keys[slot] == key) {
+                prefix = codes[slot];
+                continue;
+            }
+
+            writer.write(prefix, codeSize);
+
+            if (next < MAX_CODE_COUNT) {
+                // the decoder grows the code size one code later than the table.
+                if (next == (1 << codeSize) && codeSize < MAX_CODE_SIZE) {
+                    codeSize++;
+                }
+
+                keys[slot] = key;
+                codes[slot] = next++;
+            } else {
+                writer.write(clearCode, codeSize);
+
+                Arrays.fill(keys, -1);
+                codeSize = minCodeSize + 1;
+                next = endCode + 1;
+            }
+
+            prefix = c;
+        }
+
+        writer.write(prefix, codeSize);
+        writer.write(endCode, codeSize);
+        writer.finish();
+
+        out.write(0);
+    }
+
+    /**
+     * Codes packed from the least significant bit, in sub-blocks of 255 bytes.
+     */
+    private static class BitWriter {
+
+        private final ByteArrayOutputStream mOut;
+        private final byte[] mBlock = new byte[255];
+
+        private int mBlockSize;
+        private int mBits;
+        private int mBitCount;
+
+        BitWriter(ByteArrayOutputStream out) {
+            mOut = out;
+        }
+
+        void write(int code, int size) {
+            mBits |= code << mBitCount;
+            mBitCount += size;
+
+            while (mBitCount >= 8) {
+                writeByte(mBits & 0xFF);
+                mBits >>>= 8;
+                mBitCount -= 8;
+            }
+        }
+
+        private void writeByte(int value) {
+            mBlock[mBlockSize++] = (byte) value;
+
+            if (mBlockSize == mBlock.length) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() {
+            if (mBlockSize > 0) {
+                mOut.write(mBlockSize);
+                mOut.write(mBlock, 0, mBlockSize);
+                mBlockSize = 0;
+            }
+        }
+
+        void finish() {
+            if (mBitCount > 0) {
+                writeByte(mBits & 0xFF);
+                mBits = 0;
+                mBitCount = 0;
+            }
+
+            flushBlock();
+        }
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
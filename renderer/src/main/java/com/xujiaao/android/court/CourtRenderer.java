@@ -0,0 +1,726 @@
+package com.xujiaao.android.court;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Software renderer of the court, for thumbnails rendered without a device. The floor and the markers are laid out
+ * like {@code CourtView#configureBounds()} and mapped through the keyframes of {@link CourtProjector}, same as
+ * {@code CourtView#onDraw} of a device measuring the given camera location, into an ARGB buffer (same as {@code BufferedImage.TYPE_INT_ARGB}). The floor is sampled bilinearly from the level
+ * of its mip chain matching the projected scale of every row, rows are rendered in parallel on a fork-join pool.
+ * <p>
+ * A renderer is not thread-safe, but {@link Floor}s and pools can be shared by renderers of different threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CourtRenderer {
+
+    public static final float DEFAULT_SCALE_X = .7F;
+    public static final float DEFAULT_SCALE_Y = .5F;
+
+    private static final int ROWS_PER_TASK = 16;
+
+    // courts are at least twice as high as the camera needs, shorter courts are seen almost edge-on.
+    private static final float MIN_CAMERA_HEIGHT_RATIO = 2F;
+
+    private static ForkJoinPool sDefaultPool;
+
+    private final ForkJoinPool mPool;
+    private final float mCameraLocation;
+    private final CourtProjector mProjector;
+
+    private float mScaleX = DEFAULT_SCALE_X;
+    private float mScaleY = DEFAULT_SCALE_Y;
+
+    private int mInsetLeft;
+    private int mInsetTop;
+    private int mInsetRight;
+    private int mInsetBottom;
+
+    private int mBackgroundColor;
+
+    private int mMarkerCount;
+    private float[] mMarkerPoints = new float[0];
+    private int[] mMarkerColors = new int[0];
+    private float[] mMarkerSizes = new float[0];
+
+    public CourtRenderer() {
+        this(getDefaultPool());
+    }
+
+    /**
+     * @param pool nullable, rows are rendered on the calling thread without a pool.
+     */
+    public CourtRenderer(ForkJoinPool pool) {
+        this(pool, CourtCamera.DEFAULT_CAMERA_LOCATION);
+    }
+
+    /**
+     * @param pool           nullable, rows are rendered on the calling thread without a pool.
+     * @param cameraLocation the {@code cameraLocation} of {@link CourtCamera}, e.g. measured by {@code CourtView} on
+     *                       a device whose camera is not at the default location.
+     */
+    public CourtRenderer(ForkJoinPool pool, float cameraLocation) {
+        mPool = pool;
+        mCameraLocation = cameraLocation;
+        mProjector = new CourtProjector(new CourtCamera(cameraLocation));
+    }
+
+    /**
+     * Renderer of the same camera, floor layout and markers.
+     *
+     * @param pool nullable, rows are rendered on the calling thread without a pool.
+     */
+    CourtRenderer copy(ForkJoinPool pool) {
+        final CourtRenderer renderer = new CourtRenderer(pool, mCameraLocation);
+        renderer.mProjector.setTrajectory(mProjector.getTrajectory());
+        renderer.mScaleX = mScaleX;
+        renderer.mScaleY = mScaleY;
+        renderer.mInsetLeft = mInsetLeft;
+        renderer.mInsetTop = mInsetTop;
+        renderer.mInsetRight = mInsetRight;
+        renderer.mInsetBottom = mInsetBottom;
+        renderer.mBackgroundColor = mBackgroundColor;
+        renderer.mMarkerCount = mMarkerCount;
+        renderer.mMarkerPoints = mMarkerPoints.clone();
+        renderer.mMarkerColors = mMarkerColors.clone();
+        renderer.mMarkerSizes = mMarkerSizes.clone();
+
+        return renderer;
+    }
+
+    private static synchronized ForkJoinPool getDefaultPool() {
+        if (sDefaultPool == null) {
+            sDefaultPool = new ForkJoinPool();
+        }
+
+        return sDefaultPool;
+    }
+
+    /**
+     * @param trajectory nullable, keyframes can not be added to it any more.
+     */
+    public void setTrajectory(CourtTrajectory trajectory) {
+        mProjector.setTrajectory(trajectory);
+    }
+
+    public void setScale(float scaleX, float scaleY) throws IllegalArgumentException {
+        if (scaleX <= 0F || scaleX >= 1F || scaleY <= 0F || scaleY >= 1F) {
+            throw new IllegalArgumentException("Scale MUST in range (0F, 1F).");
+        }
+
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+    }
+
+    /**
+     * Insets of the floor in pixels of the floor, same as the court insets of {@code CourtView}.
+     */
+    public void setInsets(int left, int top, int right, int bottom) {
+        mInsetLeft = left;
+        mInsetTop = top;
+        mInsetRight = right;
+        mInsetBottom = bottom;
+    }
+
+    public void setBackgroundColor(int color) {
+        mBackgroundColor = color;
+    }
+
+    /**
+     * Markers drawn on the floor, same as {@code CourtView#setMarkerLayer(float[], int[], float[], int)}. Markers of
+     * the same color and size are drawn together, in the order of their first marker.
+     *
+     * @param points x and y of every marker, in range [0, 1] of the insets.
+     * @param sizes  diameter of every marker, in pixels of the court.
+     */
+    public void setMarkers(float[] points, int[] colors, float[] sizes, int count) {
+        if (mMarkerPoints.length < count * 2) {
+            mMarkerPoints = new float[count * 2];
+            mMarkerColors = new int[count];
+            mMarkerSizes = new float[count];
+        }
+
+        // groups of markers with the same color and size.
+        final Map<Long, Integer> groups = new HashMap<>();
+        final int[] groupOfMarkers = new int[count];
+        final int[] groupStarts = new int[count + 1];
+
+        for (int index = 0; index < count; index++) {
+            final Long key = ((long) colors[index] << 32) | (Float.floatToIntBits(sizes[index]) & 0xFFFFFFFFL);
+
+            Integer group = groups.get(key);
+            if (group == null) {
+                group = groups.size();
+                groups.put(key, group);
+            }
+
+            groupOfMarkers[index] = group;
+            groupStarts[group + 1]++;
+        }
+
+        for (int group = 0; group < groups.size(); group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+
+        for (int index = 0; index < count; index++) {
+            final int drawIndex = groupStarts[groupOfMarkers[index]]++;
+            mMarkerPoints[drawIndex * 2] = points[index * 2];
+            mMarkerPoints[drawIndex * 2 + 1] = points[index * 2 + 1];
+            mMarkerColors[drawIndex] = colors[index];
+            mMarkerSizes[drawIndex] = sizes[index];
+        }
+
+        mMarkerCount = count;
+    }
+
+    public void clearMarkers() {
+        mMarkerCount = 0;
+    }
+
+    /**
+     * Renders the court at the given progress. Courts shorter than the camera needs, e.g. of thumbnails, are rendered
+     * as courts of the min height scaled down, markers keep their sizes in pixels of the frame.
+     *
+     * @param floor nullable.
+     * @param out   ARGB pixels, at least width * height long.
+     * @throws IllegalArgumentException if the camera has no matrix of the court, e.g. of a trajectory whose court is
+     *                                  behind the camera.
+     */
+    public void render(Floor floor, float progress, int width, int height, int[] out)
+            throws IllegalArgumentException {
+        final Frame frame = new Frame(floor, width, height, out);
+
+        // CourtView#configureBounds()
+        float scale;
+        int dw = floor != null ? floor.mWidth : 0;
+        int dh = floor != null ? floor.mHeight : 0;
+
+        if (dw <= 0 || dh <= 0) {
+            scale = 1F;
+            dw = width;
+            dh = Math.round(height / mScaleX);
+        } else {
+            scale = Math.min((float) width / dw, (float) height / dh / mScaleX);
+            dw = Math.round(dw * scale);
+            dh = Math.round(dh * scale);
+        }
+
+        // the trajectory does not depend on the height of the court.
+        float cameraScale = 1F;
+        if (mProjector.getTrajectory() == null) {
+            final float minHeight = MIN_CAMERA_HEIGHT_RATIO * mProjector.getCamera().getMinHeight(mScaleX);
+            if (dh < minHeight) {
+                cameraScale = minHeight / Math.max(dh, 1);
+                scale *= cameraScale;
+                dw = Math.round(dw * cameraScale);
+                dh = Math.round(dh * cameraScale);
+            }
+        }
+
+        frame.mLeft = -dw / 2;
+        frame.mTop = -dh / 2;
+        frame.mRight = frame.mLeft + dw;
+        frame.mBottom = frame.mTop + dh;
+
+        final int markerLeft = frame.mLeft + (int) (mInsetLeft * scale);
+        final int markerTop = frame.mTop + (int) (mInsetTop * scale);
+        final int markerRight = frame.mRight - (int) (mInsetRight * scale);
+        final int markerBottom = frame.mBottom - (int) (mInsetBottom * scale);
+
+        // CourtView#getCourtMatrix(float, boolean), keyframes are baked again only if the court is resized.
+        final float[] m = frame.mMatrix;
+        mProjector.setHeight(dh);
+        mProjector.setScaleX(mScaleX);
+        mProjector.setScaleY(mScaleY);
+        mProjector.getMatrix(progress, m, null);
+
+        if (cameraScale != 1F) {
+            // matrix.postScale(1F / cameraScale, 1F / cameraScale);
+            for (int i = CourtCamera.MSCALE_X; i <= CourtCamera.MTRANS_Y; i++) {
+                m[i] /= cameraScale;
+            }
+        }
+
+        if (!isFinite(m)) {
+            throw new IllegalArgumentException("No camera matrix of the court of " + dw + "x" + dh + ".");
+        }
+
+        // canvas.translate(centerX, centerY);
+        final float centerX = width * .5F;
+        final float centerY = height * .5F;
+        m[CourtCamera.MSCALE_X] += centerX * m[CourtCamera.MPERSP_0];
+        m[CourtCamera.MSKEW_X] += centerX * m[CourtCamera.MPERSP_1];
+        m[CourtCamera.MTRANS_X] += centerX * m[CourtCamera.MPERSP_2];
+        m[CourtCamera.MSKEW_Y] += centerY * m[CourtCamera.MPERSP_0];
+        m[CourtCamera.MSCALE_Y] += centerY * m[CourtCamera.MPERSP_1];
+        m[CourtCamera.MTRANS_Y] += centerY * m[CourtCamera.MPERSP_2];
+
+        if (!invert(m, frame.mInverse)) {
+            Arrays.fill(out, 0, width * height, unpremultiply(premultiply(mBackgroundColor)));
+            return;
+        }
+
+        frame.mBackground = premultiply(mBackgroundColor);
+
+        final int count = mMarkerCount;
+        frame.mMarkerCount = count;
+        frame.mMarkers = new float[count * 4];
+        frame.mMarkerColors = new int[count];
+
+        for (int index = 0; index < count; index++) {
+            final float x = markerLeft + (markerRight - markerLeft) * mMarkerPoints[index * 2];
+            final float y = markerTop + (markerBottom - markerTop) * mMarkerPoints[index * 2 + 1];
+
+            // pixels per pixel of the court, around the marker.
+            final float sx = CourtCamera.mapX(m, x, y);
+            final float sy = CourtCamera.mapY(m, x, y);
+            final float density = (float) Math.hypot(CourtCamera.mapX(m, x + 1F, y) - sx,
+                    CourtCamera.mapY(m, x + 1F, y) - sy);
+
+            frame.mMarkers[index * 4] = x;
+            frame.mMarkers[index * 4 + 1] = y;
+            frame.mMarkers[index * 4 + 2] = mMarkerSizes[index] * .5F * cameraScale;
+            frame.mMarkers[index * 4 + 3] = density;
+            frame.mMarkerColors[index] = premultiply(mMarkerColors[index]);
+        }
+
+        if (mPool != null) {
+            mPool.invoke(new RowTask(frame, 0, height));
+        } else {
+            drawRows(frame, 0, height);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Rendering
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static class Frame {
+
+        final Floor mFloor;
+        final int mWidth;
+        final int mHeight;
+        final int[] mOut;
+
+        final float[] mMatrix = new float[CourtCamera.MATRIX_SIZE];
+        final float[] mInverse = new float[CourtCamera.MATRIX_SIZE];
+
+        int mLeft;
+        int mTop;
+        int mRight;
+        int mBottom;
+
+        int mBackground;
+
+        // x, y, radius and density of every marker.
+        int mMarkerCount;
+        float[] mMarkers;
+        int[] mMarkerColors;
+
+        Frame(Floor floor, int width, int height, int[] out) {
+            mFloor = floor;
+            mWidth = width;
+            mHeight = height;
+            mOut = out;
+        }
+    }
+
+    private static class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Frame mFrame;
+        private final int mStart;
+        private final int mEnd;
+
+        RowTask(Frame frame, int start, int end) {
+            mFrame = frame;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart > ROWS_PER_TASK) {
+                final int middle = (mStart + mEnd) >>> 1;
+                invokeAll(new RowTask(mFrame, mStart, middle), new RowTask(mFrame, middle, mEnd));
+            } else {
+                drawRows(mFrame, mStart, mEnd);
+            }
+        }
+    }
+
+    private static void drawRows(Frame frame, int start, int end) {
+        for (int y = start; y < end; y++) {
+            drawFloorRow(frame, y);
+        }
+
+        drawMarkers(frame, start, end);
+
+        final int[] out = frame.mOut;
+        for (int index = start * frame.mWidth, last = end * frame.mWidth; index < last; index++) {
+            out[index] = unpremultiply(out[index]);
+        }
+    }
+
+    private static void drawFloorRow(Frame frame, int y) {
+        final int width = frame.mWidth;
+        final int[] out = frame.mOut;
+        final int offset = y * width;
+
+        final Floor floor = frame.mFloor;
+        if (floor == null) {
+            Arrays.fill(out, offset, offset + width, frame.mBackground);
+            return;
+        }
+
+        final float[] i = frame.mInverse;
+        final float sy = y + .5F;
+
+        // homogeneous court coordinates are linear along the row.
+        final float hu0 = i[CourtCamera.MSKEW_X] * sy + i[CourtCamera.MTRANS_X];
+        final float hv0 = i[CourtCamera.MSCALE_Y] * sy + i[CourtCamera.MTRANS_Y];
+        final float hw0 = i[CourtCamera.MPERSP_1] * sy + i[CourtCamera.MPERSP_2];
+        final float du = i[CourtCamera.MSCALE_X];
+        final float dv = i[CourtCamera.MSKEW_Y];
+        final float dw = i[CourtCamera.MPERSP_0];
+
+        final int left = frame.mLeft;
+        final int top = frame.mTop;
+        final float courtWidth = frame.mRight - left;
+        final float courtHeight = frame.mBottom - top;
+
+        // the footprint of the pixels is the same along a row of the tilted floor.
+        final int levelIndex = selectLevel(frame, width * .5F, sy);
+        final int[] level = floor.mLevels[levelIndex];
+        final int levelWidth = floor.mLevelWidths[levelIndex];
+        final int levelHeight = level.length / levelWidth;
+        final float texelsX = levelWidth / courtWidth;
+        final float texelsY = levelHeight / courtHeight;
+
+        final int background = frame.mBackground;
+
+        for (int x = 0; x < width; x++) {
+            final float sx = x + .5F;
+            final float hw = hw0 + dw * sx;
+
+            int color = background;
+            if (hw > 0F) {
+                final float u = (hu0 + du * sx) / hw - left;
+                final float v = (hv0 + dv * sx) / hw - top;
+
+                if (u >= 0F && v >= 0F && u < courtWidth && v < courtHeight) {
+                    color = blend(background, sample(level, levelWidth, levelHeight,
+                            u * texelsX - .5F, v * texelsY - .5F));
+                }
+            }
+
+            out[offset + x] = color;
+        }
+    }
+
+    /**
+     * Level of the mip chain whose texels are the closest to (not smaller than) the pixels around the given point.
+     */
+    private static int selectLevel(Frame frame, float sx, float sy) {
+        final Floor floor = frame.mFloor;
+
+        final float[] i = frame.mInverse;
+        final float u = CourtCamera.mapX(i, sx, sy);
+        final float v = CourtCamera.mapY(i, sx, sy);
+        final float ux = CourtCamera.mapX(i, sx + 1F, sy) - u;
+        final float vx = CourtCamera.mapY(i, sx + 1F, sy) - v;
+        final float uy = CourtCamera.mapX(i, sx, sy + 1F) - u;
+        final float vy = CourtCamera.mapY(i, sx, sy + 1F) - v;
+
+        final float footprint = Math.max((float) Math.hypot(ux, vx), (float) Math.hypot(uy, vy))
+                * floor.mWidth / (frame.mRight - frame.mLeft);
+
+        int level = 0;
+        while (level < floor.mLevelCount - 1 && footprint >= (2 << level)) {
+            level++;
+        }
+
+        return level;
+    }
+
+    private static int sample(int[] pixels, int width, int height, float x, float y) {
+        final int x0 = (int) Math.floor(x);
+        final int y0 = (int) Math.floor(y);
+        final float fx = x - x0;
+        final float fy = y - y0;
+
+        final int l = Math.max(x0, 0);
+        final int r = Math.min(x0 + 1, width - 1);
+        final int t = Math.max(y0, 0) * width;
+        final int b = Math.min(y0 + 1, height - 1) * width;
+
+        return lerp(lerp(pixels[t + l], pixels[t + r], fx), lerp(pixels[b + l], pixels[b + r], fx), fy);
+    }
+
+    private static void drawMarkers(Frame frame, int start, int end) {
+        final float[] m = frame.mMatrix;
+        final float[] i = frame.mInverse;
+        final float[] markers = frame.mMarkers;
+        final int width = frame.mWidth;
+        final int[] out = frame.mOut;
+
+        for (int index = 0; index < frame.mMarkerCount; index++) {
+            final float cx = markers[index * 4];
+            final float cy = markers[index * 4 + 1];
+            final float radius = markers[index * 4 + 2];
+            final float density = markers[index * 4 + 3];
+            final int color = frame.mMarkerColors[index];
+
+            if (radius <= 0F) {
+                continue;
+            }
+
+            // bounding box of the marker on the screen, plus a pixel for the anti-aliasing.
+            float minX = Float.POSITIVE_INFINITY;
+            float minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY;
+            float maxY = Float.NEGATIVE_INFINITY;
+            for (int corner = 0; corner < 4; corner++) {
+                final float x = (corner & 1) == 0 ? cx - radius : cx + radius;
+                final float y = (corner & 2) == 0 ? cy - radius : cy + radius;
+                final float px = CourtCamera.mapX(m, x, y);
+                final float py = CourtCamera.mapY(m, x, y);
+                minX = Math.min(minX, px);
+                minY = Math.min(minY, py);
+                maxX = Math.max(maxX, px);
+                maxY = Math.max(maxY, py);
+            }
+
+            final int l = Math.max((int) Math.floor(minX) - 1, 0);
+            final int t = Math.max((int) Math.floor(minY) - 1, start);
+            final int r = Math.min((int) Math.ceil(maxX) + 1, width);
+            final int b = Math.min((int) Math.ceil(maxY) + 1, end);
+
+            for (int y = t; y < b; y++) {
+                final float sy = y + .5F;
+                for (int x = l; x < r; x++) {
+                    final float sx = x + .5F;
+                    final float u = CourtCamera.mapX(i, sx, sy) - cx;
+                    final float v = CourtCamera.mapY(i, sx, sy) - cy;
+
+                    final float coverage = (radius - (float) Math.sqrt(u * u + v * v)) * density + .5F;
+                    if (coverage > 0F) {
+                        final int offset = y * width + x;
+                        out[offset] = blend(out[offset], coverage >= 1F ? color : scale(color, coverage));
+                    }
+                }
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Floor
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Floor image with its mip chain, immutable and built once for all the renderings.
+     */
+    public static class Floor {
+
+        private static final int MAX_LEVEL_COUNT = 8;
+        private static final int MIN_LEVEL_SIZE = 16;
+
+        private final int mWidth;
+        private final int mHeight;
+
+        private final int mLevelCount;
+        private final int[][] mLevels;
+        private final int[] mLevelWidths;
+
+        /**
+         * @param pixels ARGB pixels of the floor, same as {@code BufferedImage#getRGB}.
+         */
+        public Floor(int[] pixels, int width, int height) throws IllegalArgumentException {
+            if (width <= 0 || height <= 0 || pixels.length < width * height) {
+                throw new IllegalArgumentException("Invalid floor: " + width + "x" + height);
+            }
+
+            mWidth = width;
+            mHeight = height;
+
+            mLevels = new int[MAX_LEVEL_COUNT][];
+            mLevelWidths = new int[MAX_LEVEL_COUNT];
+
+            int[] level = new int[width * height];
+            for (int index = 0; index < level.length; index++) {
+                level[index] = premultiply(pixels[index]);
+            }
+
+            int w = width;
+            int h = height;
+            int count = 0;
+
+            while (true) {
+                mLevels[count] = level;
+                mLevelWidths[count] = w;
+                count++;
+
+                if (count == MAX_LEVEL_COUNT || w / 2 < MIN_LEVEL_SIZE || h / 2 < MIN_LEVEL_SIZE) {
+                    break;
+                }
+
+                level = downsample(level, w, h);
+                w /= 2;
+                h /= 2;
+            }
+
+            mLevelCount = count;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * Box filter to the half size.
+         */
+        private static int[] downsample(int[] pixels, int width, int height) {
+            final int w = width / 2;
+            final int h = height / 2;
+            final int[] result = new int[w * h];
+
+            for (int y = 0; y < h; y++) {
+                final int t = y * 2 * width;
+                final int b = t + width;
+
+                for (int x = 0; x < w; x++) {
+                    final int l = x * 2;
+                    result[y * w + x] = average(pixels[t + l], pixels[t + l + 1], pixels[b + l], pixels[b + l + 1]);
+                }
+            }
+
+            return result;
+        }
+
+        private static int average(int c0, int c1, int c2, int c3) {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                final int sum = ((c0 >>> shift) & 0xFF) + ((c1 >>> shift) & 0xFF)
+                        + ((c2 >>> shift) & 0xFF) + ((c3 >>> shift) & 0xFF);
+                result |= ((sum + 2) >> 2) << shift;
+            }
+
+            return result;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Tools
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static boolean isFinite(float[] m) {
+        for (float value : m) {
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean invert(float[] m, float[] out) {
+        final double a = m[0], b = m[1], c = m[2];
+        final double d = m[3], e = m[4], f = m[5];
+        final double g = m[6], h = m[7], k = m[8];
+
+        final double det = a * (e * k - f * h) - b * (d * k - f * g) + c * (d * h - e * g);
+        if (det == 0D) {
+            return false;
+        }
+
+        final double s = 1D / det;
+        out[0] = (float) ((e * k - f * h) * s);
+        out[1] = (float) ((c * h - b * k) * s);
+        out[2] = (float) ((b * f - c * e) * s);
+        out[3] = (float) ((f * g - d * k) * s);
+        out[4] = (float) ((a * k - c * g) * s);
+        out[5] = (float) ((c * d - a * f) * s);
+        out[6] = (float) ((d * h - e * g) * s);
+        out[7] = (float) ((b * g - a * h) * s);
+        out[8] = (float) ((a * e - b * d) * s);
+
+        return true;
+    }
+
+    private static int premultiply(int color) {
+        final int a = color >>> 24;
+        if (a == 0xFF) {
+            return color;
+        }
+
+        final int r = ((color >> 16) & 0xFF) * a / 0xFF;
+        final int g = ((color >> 8) & 0xFF) * a / 0xFF;
+        final int b = (color & 0xFF) * a / 0xFF;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int unpremultiply(int color) {
+        final int a = color >>> 24;
+        if (a == 0xFF || a == 0) {
+            return a == 0 ? 0 : color;
+        }
+
+        final int r = Math.min(((color >> 16) & 0xFF) * 0xFF / a, 0xFF);
+        final int g = Math.min(((color >> 8) & 0xFF) * 0xFF / a, 0xFF);
+        final int b = Math.min((color & 0xFF) * 0xFF / a, 0xFF);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Source over, both colors are premultiplied.
+     */
+    private static int blend(int dst, int src) {
+        final int a = src >>> 24;
+        if (a == 0xFF) {
+            return src;
+        } else if (a == 0) {
+            return dst;
+        }
+
+        final int inverse = 0xFF - a;
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int value = ((src >>> shift) & 0xFF) + (((dst >>> shift) & 0xFF) * inverse + 127) / 0xFF;
+            result |= Math.min(value, 0xFF) << shift;
+        }
+
+        return result;
+    }
+
+    private static int scale(int color, float fraction) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            result |= Math.round(((color >>> shift) & 0xFF) * fraction) << shift;
+        }
+
+        return result;
+    }
+
+    private static int lerp(int from, int to, float fraction) {
+        if (from == to) {
+            return from;
+        }
+
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int f = (from >>> shift) & 0xFF;
+            final int t = (to >>> shift) & 0xFF;
+            result |= Math.round(f + (t - f) * fraction) << shift;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package com.xujiaao.android.court;
+
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+
+import static org.junit.Assert.assertEquals;
+
+public class CourtGifEncoderTest {
+
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 41;
+
+    /**
+     * Frame of 200 colors of different RGB 555 bins, which are kept exactly by the palette.
+     */
+    private static int[] createFrame(int frame) {
+        final Random random = new Random(frame);
+        final int[] colors = new int[200];
+        for (int index = 0; index < colors.length; index++) {
+            colors[index] = (index & 0x1F) << 19 | (index >> 5) << 11 | random.nextInt(32) << 3;
+        }
+
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        for (int index = 0; index < pixels.length; index++) {
+            pixels[index] = 0xFF000000 | colors[(index * 31 + frame) % colors.length];
+        }
+
+        return pixels;
+    }
+
+    private static int getDelay(IIOMetadata metadata) {
+        Node node = metadata.getAsTree(metadata.getNativeMetadataFormatName()).getFirstChild();
+        while (!"GraphicControlExtension".equals(node.getNodeName())) {
+            node = node.getNextSibling();
+        }
+
+        return Integer.parseInt(node.getAttributes().getNamedItem("delayTime").getNodeValue());
+    }
+
+    @Test
+    public void framesAreDecodedByImageIO() throws IOException {
+        final int frameCount = 6;
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CourtGifEncoder encoder = new CourtGifEncoder(out, WIDTH, HEIGHT, 0);
+        for (int frame = 0; frame < frameCount; frame++) {
+            encoder.writeFrame(CourtGifEncoder.encodeFrame(
+                    createFrame(frame), WIDTH, HEIGHT, CourtGifEncoder.getFrameDelay(frame, 33)));
+        }
+
+        encoder.finish();
+
+        final ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(frameCount, reader.getNumImages(true));
+
+        int duration = 0;
+        for (int frame = 0; frame < frameCount; frame++) {
+            final BufferedImage image = reader.read(frame);
+            assertEquals(WIDTH, image.getWidth());
+            assertEquals(HEIGHT, image.getHeight());
+
+            final int[] expected = createFrame(frame);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals(expected[y * WIDTH + x], image.getRGB(x, y));
+                }
+            }
+
+            duration += getDelay(reader.getImageMetadata(frame));
+        }
+
+        assertEquals(Math.round(frameCount * 33 / 10F), duration);
+    }
+
+    @Test
+    public void delayErrorsAreCarried() {
+        final int[] expected = {3, 4, 3, 3, 4, 3, 3, 3, 4, 3};
+
+        int duration = 0;
+        for (int frame = 0; frame < expected.length; frame++) {
+            assertEquals(expected[frame], CourtGifEncoder.getFrameDelay(frame, 33));
+            duration += CourtGifEncoder.getFrameDelay(frame, 33);
+        }
+
+        assertEquals(33, duration);
+        assertEquals(4, CourtGifEncoder.getFrameDelay(7, 40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyFramesAreRejected() {
+        CourtGifEncoder.encodeFrame(new int[0], 0, 0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortFramesAreRejected() {
+        CourtGifEncoder.encodeFrame(new int[WIDTH], WIDTH, HEIGHT, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyAnimationsAreRejected() throws IOException {
+        new CourtGifEncoder(new ByteArrayOutputStream(), WIDTH, 0, 0);
+    }
+}